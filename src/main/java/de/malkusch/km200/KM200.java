@@ -5,16 +5,27 @@ import static java.util.Objects.requireNonNull;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.URI;
+import java.security.GeneralSecurityException;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
-import de.malkusch.km200.KM200Exception.ServerError;
+import de.malkusch.km200.http.AdaptiveTimeout;
+import de.malkusch.km200.http.CachingHttp;
 import de.malkusch.km200.http.Http;
-import de.malkusch.km200.http.RetryHttp;
+import de.malkusch.km200.http.PacingHttp;
 import de.malkusch.km200.http.SerializedHttp;
-import de.malkusch.km200.http.UrlHttp;
+import de.malkusch.km200.http.SerializedHttp.Overflow;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
@@ -51,18 +62,30 @@ import tools.jackson.databind.ObjectMapper;
  * protect users from wrong usage, this API will serialize all requests, i.e.
  * concurrent requests will happen sequentially.
  */
-public final class KM200 {
+public final class KM200 implements AutoCloseable {
 
+    private final KM200Channel channel;
+    private final boolean shared;
+    private final AtomicBoolean closed = new AtomicBoolean();
     private final KM200Device device;
     private final KM200Comm comm;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectMapper mapper;
+    private final ResponseMemo memo;
+    private final KM200Metrics metrics;
+    private volatile Duration redundantUpdateMaxAge;
+    private final SerializedHttp serializedHttp;
+    private final Http channelHttp;
     private final Http queryHttp;
     private final Http updateHttp;
+    private final KM200Endpoint.Factory endpointFactory;
 
     public static final int RETRY_DEFAULT = 3;
     public static final int RETRY_DISABLED = 0;
 
-    static final String USER_AGENT = "TeleHeater/2.2.3";
+    /**
+     * The KM200 only answers the user agent of its app.
+     */
+    public static final String USER_AGENT = "TeleHeater/2.2.3";
 
     /**
      * Configure the KM200 API with a default retry of {@link #RETRY_DEFAULT}.
@@ -109,56 +132,393 @@ public final class KM200 {
     public KM200(String uri, int retries, Duration timeout, String gatewayPassword, String privatePassword, String salt)
             throws KM200Exception, IOException, InterruptedException {
 
-        assertHttpUri(uri);
-        requireNonNull(timeout);
-        assertNotBlank(gatewayPassword, "gatewayPassword must not be blank");
-        assertNotBlank(privatePassword, "privatePassword must not be blank");
-        assertNotBlank(salt, "salt must not be blank");
-        assertNotNegative(retries, "retries must not be negative");
-
-        var device = new KM200Device();
-        device.setCharSet("UTF-8");
-        device.setGatewayPassword(gatewayPassword.replace("-", ""));
-        device.setPrivatePassword(privatePassword);
-        device.setIP4Address(uri);
-        device.setMD5Salt(salt);
-        device.setInited(true);
-        this.device = device;
-        this.comm = new KM200Comm();
-
-        {
-            Http http = new UrlHttp(uri.replaceAll("/*$", ""), USER_AGENT, timeout);
-
-            /*
-             * The KM200 itself is not thread safe. This proxy serializes all
-             * requests to protect users from a wrong concurrent usage of this
-             * API.
-             */
-            http = new SerializedHttp(http);
-
-            queryHttp = new RetryHttp(http, retries, IOException.class, ServerError.class);
-            updateHttp = new RetryHttp(http, retries, ServerError.class);
+        this(builder() //
+                .uri(uri) //
+                .retries(retries) //
+                .timeout(timeout) //
+                .gatewayPassword(gatewayPassword) //
+                .privatePassword(privatePassword) //
+                .salt(salt));
+    }
+
+    private KM200(Builder builder) throws KM200Exception, IOException, InterruptedException {
+        this(new KM200Channel(builder), builder, false);
+
+        if (builder.probe == Probe.EAGER) {
+            try {
+                probeEagerly();
+
+            } catch (IllegalArgumentException | InterruptedException e) {
+                // The caller has no instance to close the channel
+                try {
+                    close();
+                } catch (KM200Exception closing) {
+                    e.addSuppressed(closing);
+                }
+                throw e;
+            }
         }
+    }
+
+    KM200(KM200Channel channel, Builder builder, boolean shared) {
+        this.channel = channel;
+        this.shared = shared;
+        this.device = channel.device;
+        this.comm = channel.comm;
+        this.mapper = channel.mapper;
+        this.memo = channel.memo;
+        this.metrics = channel.metrics;
+        this.serializedHttp = channel.serializedHttp;
+        this.channelHttp = channel.channelHttp;
+        this.queryHttp = channel.queryHttp;
+        this.updateHttp = channel.updateHttp;
+        this.endpointFactory = new KM200Endpoint.Factory(this, mapper);
+        this.redundantUpdateMaxAge = builder.redundantUpdateMaxAge;
+    }
 
+    /**
+     * @throws IllegalArgumentException
+     *             if the probe failed
+     */
+    void probeEagerly() throws InterruptedException {
         try {
-            query("/system");
+            probe();
+        } catch (InterruptedException e) {
+            throw e;
         } catch (Exception e) {
-            throw new IllegalArgumentException("Wrong uri " + uri, e);
+            throw new IllegalArgumentException("Wrong uri " + channel.uri, e);
+        }
+    }
+
+    /**
+     * Releases this instance. A shared instance releases its reference to the
+     * gateway's channel, the last reference closes the channel.
+     * 
+     * This instance must not be used afterwards.
+     * 
+     * @see KM200Registry
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (shared) {
+            KM200Registry.release(channel);
+        } else {
+            channel.close();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static enum Probe {
+
+        /**
+         * Query /system while building the KM200 API and fail if that's not
+         * possible.
+         */
+        EAGER,
+
+        /**
+         * Don't verify the configuration. You may call {@link KM200#probe()}
+         * later.
+         */
+        SKIP
+    }
+
+    /**
+     * Configures a KM200 API.
+     * 
+     * <pre>
+     * {@code
+     * var km200 = KM200.builder()
+     *         .uri("http://192.168.0.44")
+     *         .gatewayPassword("1234-5678-90ab-cdef")
+     *         .privatePassword("secretExample")
+     *         .salt("1234567890aabbccddeeff11223344556677889900aabbccddeeffa0a1a2b2d3")
+     *         .decorateTransport(http -> new PacingHttp(http, Duration.ofMillis(100)))
+     *         .decorateChannel(http -> new CachingHttp(http, Duration.ofSeconds(10)))
+     *         .probe(Probe.SKIP)
+     *         .build();
+     * }
+     * </pre>
+     * 
+     * A request passes these layers: retry, channel decorators, serialization,
+     * transport decorators and finally the transport.
+     * 
+     * @see KM200#KM200(String, int, Duration, String, String, String)
+     */
+    public static final class Builder {
+        String uri;
+        int retries = RETRY_DEFAULT;
+        Duration timeout = Duration.ofSeconds(5);
+        AdaptiveTimeout adaptiveTimeout;
+        String gatewayPassword;
+        String privatePassword;
+        String salt;
+        Http transport;
+        UnaryOperator<Http> transportDecorator = UnaryOperator.identity();
+        UnaryOperator<Http> channelDecorator = UnaryOperator.identity();
+        Probe probe = Probe.EAGER;
+        ObjectMapper mapper;
+        Duration redundantUpdateMaxAge;
+        int queueCapacity = Integer.MAX_VALUE;
+        Overflow overflow = Overflow.REJECT;
+
+        private Builder() {
+        }
+
+        /**
+         * @return A builder with the same configuration, which can be changed
+         *         without affecting this builder. Both share the transport and
+         *         the decorator functions.
+         */
+        public Builder copy() {
+            var copy = new Builder();
+            copy.uri = uri;
+            copy.retries = retries;
+            copy.timeout = timeout;
+            copy.adaptiveTimeout = adaptiveTimeout;
+            copy.gatewayPassword = gatewayPassword;
+            copy.privatePassword = privatePassword;
+            copy.salt = salt;
+            copy.transport = transport;
+            copy.transportDecorator = transportDecorator;
+            copy.channelDecorator = channelDecorator;
+            copy.probe = probe;
+            copy.mapper = mapper;
+            copy.redundantUpdateMaxAge = redundantUpdateMaxAge;
+            copy.queueCapacity = queueCapacity;
+            copy.overflow = overflow;
+            return copy;
+        }
+
+        public Builder uri(String uri) {
+            this.uri = uri;
+            return this;
+        }
+
+        public Builder retries(int retries) {
+            this.retries = retries;
+            return this;
+        }
+
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Adapts the read timeout of the default transport per path to the
+         * observed latencies. The {@link #timeout(Duration)} remains the
+         * connect timeout. This can't be combined with
+         * {@link #transport(Http)}.
+         */
+        public Builder adaptiveTimeout(AdaptiveTimeout adaptiveTimeout) {
+            this.adaptiveTimeout = requireNonNull(adaptiveTimeout);
+            return this;
+        }
+
+        public Builder gatewayPassword(String gatewayPassword) {
+            this.gatewayPassword = gatewayPassword;
+            return this;
+        }
+
+        public Builder privatePassword(String privatePassword) {
+            this.privatePassword = privatePassword;
+            return this;
+        }
+
+        public Builder salt(String salt) {
+            this.salt = salt;
+            return this;
+        }
+
+        /**
+         * Replaces the default {@link de.malkusch.km200.http.UrlHttp}
+         * transport. The uri is still required for the encryption.
+         */
+        public Builder transport(Http transport) {
+            this.transport = requireNonNull(transport);
+            return this;
+        }
+
+        /**
+         * Decorates the transport within the serialization of requests, i.e.
+         * the decorator sees one request at a time (e.g. {@link PacingHttp}).
+         * Several decorators are applied in the order of their registration.
+         */
+        public Builder decorateTransport(UnaryOperator<Http> decorator) {
+            var previous = transportDecorator;
+            transportDecorator = http -> requireNonNull(decorator.apply(previous.apply(http)));
+            return this;
+        }
+
+        /**
+         * Decorates the serialized channel, i.e. the decorator sees concurrent
+         * requests before they wait for their turn (e.g. {@link CachingHttp}).
+         * Several decorators are applied in the order of their registration.
+         */
+        public Builder decorateChannel(UnaryOperator<Http> decorator) {
+            var previous = channelDecorator;
+            channelDecorator = http -> requireNonNull(decorator.apply(previous.apply(http)));
+            return this;
+        }
+
+        /**
+         * Bounds the amount of requests which wait for the KM200. By default
+         * that queue is unbounded.
+         * 
+         * @param capacity
+         *            The maximum amount of waiting requests
+         * @param overflow
+         *            What happens to requests beyond that capacity
+         */
+        public Builder queue(int capacity, Overflow overflow) {
+            assertNotNegative(capacity, "capacity must not be negative");
+            this.queueCapacity = capacity;
+            this.overflow = requireNonNull(overflow);
+            return this;
+        }
+
+        /**
+         * Applies a measured profile: its timeout and, if the gateway needed
+         * one, a {@link PacingHttp} with its pause.
+         */
+        public Builder profile(KM200Profile profile) {
+            timeout(profile.timeout());
+            if (profile.pause().isPositive()) {
+                decorateTransport(http -> new PacingHttp(http, profile.pause()));
+            }
+            return this;
+        }
+
+        public Builder probe(Probe probe) {
+            this.probe = requireNonNull(probe);
+            return this;
+        }
+
+        /**
+         * Shares a preconfigured mapper, e.g. between many KM200 instances.
+         */
+        public Builder mapper(ObjectMapper mapper) {
+            this.mapper = requireNonNull(mapper);
+            return this;
+        }
+
+        /**
+         * @see KM200#skipRedundantUpdates(Duration)
+         */
+        public Builder skipRedundantUpdates(Duration maxAge) {
+            if (requireNonNull(maxAge).isNegative()) {
+                throw new IllegalArgumentException("maxAge must not be negative");
+            }
+            this.redundantUpdateMaxAge = maxAge;
+            return this;
+        }
+
+        public KM200 build() throws KM200Exception, IOException, InterruptedException {
+            return new KM200(this);
+        }
+
+        /**
+         * Builds an instance which shares the channel with all other shared
+         * instances of the same KM200.
+         * 
+         * @see KM200Registry#acquire(Builder)
+         */
+        public KM200 buildShared() throws KM200Exception, IOException, InterruptedException {
+            return KM200Registry.acquire(this);
         }
     }
 
-    private final KM200Endpoint.Factory endpointFactory = new KM200Endpoint.Factory(this, mapper);
+    /**
+     * Queries /system to verify the configuration.
+     */
+    public void probe() throws KM200Exception, IOException, InterruptedException {
+        query("/system");
+    }
 
+    /**
+     * Discovers all endpoints below the well known roots.
+     * 
+     * @see KM200Endpoint.Discovery#ALL
+     */
     public Stream<KM200Endpoint> endpoints() throws KM200Exception, IOException, InterruptedException {
-        return endpointFactory.build();
+        return endpoints(KM200Endpoint.Discovery.ALL);
+    }
+
+    /**
+     * Discovers endpoints lazily, i.e. the stream queries the KM200 while it
+     * is consumed. Each root is traversed breadth first and each path is
+     * queried only once.
+     * 
+     * <pre>
+     * {@code
+     * km200.endpoints(KM200Endpoint.Discovery.ALL.roots("/heatingCircuits").maxDepth(2))
+     *         .forEach(System.out::println);
+     * }
+     * </pre>
+     */
+    public Stream<KM200Endpoint> endpoints(KM200Endpoint.Discovery discovery)
+            throws KM200Exception, IOException, InterruptedException {
+        return endpointFactory.build(requireNonNull(discovery));
+    }
+
+    /**
+     * Don't send updates with the value which the KM200 already has.
+     * 
+     * Before an update the current value is taken from a previous query if
+     * that was not older than maxAge, otherwise it is queried. Suppressed
+     * updates are counted in {@link KM200Metrics#suppressedUpdates()}. Use
+     * {@link #forceUpdate(String, String)} to send an update regardless.
+     * 
+     * @param maxAge
+     *            How old a previously queried value may be to be considered
+     *            current. Use {@link Duration#ZERO} to always query the current
+     *            value.
+     */
+    public void skipRedundantUpdates(Duration maxAge) {
+        if (requireNonNull(maxAge).isNegative()) {
+            throw new IllegalArgumentException("maxAge must not be negative");
+        }
+        redundantUpdateMaxAge = maxAge;
+    }
+
+    public KM200Metrics metrics() {
+        return metrics;
+    }
+
+    private static sealed interface Update {
+
+        /**
+         * @return true if the KM200's response has already the updated value
+         */
+        boolean isCurrent(JsonNode response);
     }
 
-    private record UpdateString(String value) {
+    private record UpdateString(String value) implements Update {
+
+        @Override
+        public boolean isCurrent(JsonNode response) {
+            return response.get("value") instanceof JsonNode current && value.equals(current.asText());
+        }
     }
 
     public void update(String path, String value) throws KM200Exception, IOException, InterruptedException {
         var update = new UpdateString(value);
-        update(path, update);
+        update(path, update, false);
+    }
+
+    /**
+     * Updates regardless of {@link #skipRedundantUpdates(Duration)}.
+     */
+    public void forceUpdate(String path, String value) throws KM200Exception, IOException, InterruptedException {
+        var update = new UpdateString(value);
+        update(path, update, true);
     }
 
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
@@ -167,32 +527,61 @@ public final class KM200 {
         update(path, time.format(DATE_TIME_FORMATTER));
     }
 
-    private record UpdateFloat(BigDecimal value) {
+    public void forceUpdate(String path, LocalDateTime time) throws KM200Exception, IOException, InterruptedException {
+        forceUpdate(path, time.format(DATE_TIME_FORMATTER));
+    }
+
+    private record UpdateFloat(BigDecimal value) implements Update {
+
+        @Override
+        public boolean isCurrent(JsonNode response) {
+            return response.get("value") instanceof JsonNode current && current.isNumber()
+                    && value.compareTo(current.decimalValue()) == 0;
+        }
     }
 
     public void update(String path, int value) throws KM200Exception, IOException, InterruptedException {
         update(path, new BigDecimal(value));
     }
 
+    public void forceUpdate(String path, int value) throws KM200Exception, IOException, InterruptedException {
+        forceUpdate(path, new BigDecimal(value));
+    }
+
     public void update(String path, BigDecimal value) throws KM200Exception, IOException, InterruptedException {
         var update = new UpdateFloat(value);
-        update(path, update);
+        update(path, update, false);
+    }
+
+    public void forceUpdate(String path, BigDecimal value) throws KM200Exception, IOException, InterruptedException {
+        var update = new UpdateFloat(value);
+        update(path, update, true);
     }
 
-    private void update(String path, Object update) throws KM200Exception, IOException, InterruptedException {
+    private void update(String path, Update update, boolean force)
+            throws KM200Exception, IOException, InterruptedException {
         assertPath(path);
 
-        String json = null;
+        if (!force && isRedundant(path, update, redundantUpdateMaxAge)) {
+            metrics.suppressedUpdate();
+            return;
+        }
+
+        var encoder = UpdateEncoder.get();
+        int length;
         try {
-            json = mapper.writeValueAsString(update);
+            length = encoder.encode(mapper, device, update);
         } catch (JacksonException e) {
             throw new IllegalStateException("Failed to update " + path, e);
+        } catch (GeneralSecurityException e) {
+            throw new KM200Exception("Could not encrypt update of " + path, e);
         }
-        var encrypted = comm.encodeMessage(device, json);
-        if (encrypted == null) {
-            throw new KM200Exception("Could not encrypt update " + json);
+        Http.Response response;
+        try {
+            response = updateHttp.post(path, encoder.encoded(), length);
+        } finally {
+            memo.forget(path);
         }
-        var response = updateHttp.post(path, encrypted);
 
         if (!(response.status() >= 200 && response.status() < 300)) {
             throw new KM200Exception(
@@ -200,24 +589,76 @@ public final class KM200 {
         }
     }
 
-    public String query(String path) throws KM200Exception, IOException, InterruptedException {
-        assertPath(path);
+    private boolean isRedundant(String path, Update update, Duration maxAge) throws InterruptedException {
+        if (maxAge == null) {
+            return false;
+        }
 
-        var response = queryHttp.get(path);
-        var encrypted = response.body();
-        if (encrypted == null) {
-            throw new KM200Exception("No response when querying " + path);
+        try {
+            return update.isCurrent(currentEntry(path, maxAge).json(mapper));
+
+        } catch (KM200Exception | IOException e) {
+            return false;
         }
-        var decrypted = comm.decodeMessage(device, encrypted);
+    }
 
-        return switch (decrypted) {
-        case String d when path.equals("/gateway/firmware") -> decrypted;
-        case String d when d.startsWith("{") -> decrypted;
+    public KM200SwitchProgram querySwitchProgram(String path)
+            throws KM200Exception, IOException, InterruptedException {
+        return KM200SwitchProgram.parse(path, queryJson(path));
+    }
 
-        case null -> throw new KM200Exception("Could not decrypt query " + path);
-        case String d -> throw new KM200Exception(String.format(
-                "Could not decrypt query %s. Body was:\n%s\n\n Decrypted was:\n%s", path, encrypted, decrypted));
-        };
+    private record UpdateSwitchProgram(List<KM200SwitchProgram.SwitchPointJson> switchPoints) implements Update {
+
+        @Override
+        public boolean isCurrent(JsonNode response) {
+            return switchPoints.equals(KM200SwitchProgram.parse("", response).toJson());
+        }
+    }
+
+    /**
+     * Updates the switch program only if it differs from the KM200's program.
+     * 
+     * The KM200's program is queried before the update, unless
+     * {@link #skipRedundantUpdates(Duration)} allows using a previously
+     * queried program.
+     * 
+     * @return true if the program was updated, false if the KM200 had already
+     *         this program
+     * @throws IllegalArgumentException
+     *             if the program exceeds the limits of the KM200's program
+     */
+    public boolean update(String path, KM200SwitchProgram program)
+            throws KM200Exception, IOException, InterruptedException {
+        assertPath(path);
+        requireNonNull(program);
+
+        var maxAge = redundantUpdateMaxAge != null ? redundantUpdateMaxAge : Duration.ZERO;
+        var current = KM200SwitchProgram.parse(path, currentEntry(path, maxAge).json(mapper));
+        program.assertFits(current);
+        if (program.equals(current)) {
+            metrics.suppressedUpdate();
+            return false;
+        }
+
+        update(path, new UpdateSwitchProgram(program.toJson()), true);
+        return true;
+    }
+
+    /**
+     * @return The previously queried response if it's not older than maxAge,
+     *         or a new response
+     */
+    private ResponseMemo.Entry currentEntry(String path, Duration maxAge)
+            throws KM200Exception, IOException, InterruptedException {
+        var entry = memo.recent(path, maxAge);
+        if (entry == null) {
+            entry = queryEntry(path);
+        }
+        return entry;
+    }
+
+    public String query(String path) throws KM200Exception, IOException, InterruptedException {
+        return queryEntry(path).decrypted();
     }
 
     public double queryDouble(String path) throws KM200Exception, IOException, InterruptedException {
@@ -235,14 +676,171 @@ public final class KM200 {
         return json.get("value").asText();
     }
 
-    private JsonNode queryJson(String path) throws KM200Exception, IOException, InterruptedException {
+    /**
+     * Queries several paths in one pass without letting other requests
+     * interleave.
+     * 
+     * Failing paths don't abort the snapshot, their error is part of the
+     * result. Paths are not retried, so that a failing path doesn't hold back
+     * other callers with retry delays.
+     */
+    public KM200Snapshot snapshot(Collection<String> paths) throws KM200Exception, IOException, InterruptedException {
+        var pathArray = paths.toArray(String[]::new);
+        for (var path : pathArray) {
+            assertPath(path);
+        }
+        var snapshot = new KM200Snapshot(pathArray);
+
+        return serializedHttp.exclusively(() -> {
+            for (int i = 0; i < pathArray.length; i++) {
+                try {
+                    var path = pathArray[i];
+                    var version = memo.version();
+                    var value = decrypt(path, version, channelHttp.get(path)).json(mapper).get("value");
+                    var timestamp = System.currentTimeMillis();
+                    switch (value) {
+                    case JsonNode v when v.isNumber() -> snapshot.numeric(i, v.asDouble(), timestamp);
+                    case JsonNode v -> snapshot.string(i, v.asText(), timestamp);
+                    case null -> snapshot.error(i, new KM200Exception(pathArray[i] + " has no value"), timestamp);
+                    }
+
+                } catch (KM200Exception | IOException e) {
+                    snapshot.error(i, e, System.currentTimeMillis());
+                }
+            }
+            return snapshot;
+        });
+    }
+
+    /**
+     * Queries the recording of a day, e.g.
+     * {@code recording("/recordings/heatSources/total/energyMonitoring/consumption", LocalDate.now())}
+     * 
+     * @see KM200Recording
+     */
+    public KM200Recording recording(String path, LocalDate day)
+            throws KM200Exception, IOException, InterruptedException {
+        return recording(path, KM200Recording.interval(day));
+    }
+
+    public KM200Recording recording(String path, YearMonth month)
+            throws KM200Exception, IOException, InterruptedException {
+        return recording(path, KM200Recording.interval(month));
+    }
+
+    public KM200Recording recording(String path, Year year) throws KM200Exception, IOException, InterruptedException {
+        return recording(path, KM200Recording.interval(year));
+    }
+
+    /**
+     * Queries the recordings of each day from the first to the last day
+     * (inclusive).
+     */
+    public List<KM200Recording> recordings(String path, LocalDate first, LocalDate last)
+            throws KM200Exception, IOException, InterruptedException {
+        return recordings(path, first, last, day -> day.plusDays(1), KM200Recording::interval);
+    }
+
+    /**
+     * Queries the recordings of each month from the first to the last month
+     * (inclusive).
+     */
+    public List<KM200Recording> recordings(String path, YearMonth first, YearMonth last)
+            throws KM200Exception, IOException, InterruptedException {
+        return recordings(path, first, last, month -> month.plusMonths(1), KM200Recording::interval);
+    }
+
+    /**
+     * Queries the recordings of each year from the first to the last year
+     * (inclusive).
+     */
+    public List<KM200Recording> recordings(String path, Year first, Year last)
+            throws KM200Exception, IOException, InterruptedException {
+        return recordings(path, first, last, year -> year.plusYears(1), KM200Recording::interval);
+    }
+
+    private <T extends Comparable<? super T>> List<KM200Recording> recordings(String path, T first, T last,
+            UnaryOperator<T> next, Function<T, String> interval)
+            throws KM200Exception, IOException, InterruptedException {
+        var recordings = new ArrayList<KM200Recording>();
+        for (var period = first; period.compareTo(last) <= 0; period = next.apply(period)) {
+            recordings.add(recording(path, interval.apply(period)));
+        }
+        return recordings;
+    }
+
+    private KM200Recording recording(String path, String interval)
+            throws KM200Exception, IOException, InterruptedException {
+        assertPath(path);
+        var json = query(path + "?interval=" + interval);
+        return KM200Recording.parse(mapper, path, interval, json);
+    }
+
+    JsonNode queryJson(String path) throws KM200Exception, IOException, InterruptedException {
+        return queryEntry(path).json(mapper);
+    }
+
+    /**
+     * Queries without throwing on the expected failures of a path.
+     * 
+     * @see KM200Result
+     */
+    public KM200Result tryQuery(String path) throws InterruptedException {
+        assertPath(path);
+
         try {
-            return mapper.readTree(query(path));
-        } catch (JacksonException e) {
-            throw new KM200Exception("Could not parse JSON from query " + path, e);
+            var version = memo.version();
+            var response = queryHttp.tryGet(path);
+            return switch (response.status()) {
+            case 403 -> new KM200Result.Forbidden(path);
+            case 404 -> new KM200Result.NotFound(path);
+            case 423 -> new KM200Result.Locked(path);
+            default -> new KM200Result.Value(path, decrypt(path, version, response).decrypted());
+            };
+
+        } catch (KM200Exception | IOException e) {
+            return new KM200Result.Failure(path, e);
         }
     }
 
+    private ResponseMemo.Entry queryEntry(String path) throws KM200Exception, IOException, InterruptedException {
+        assertPath(path);
+
+        var version = memo.version();
+        var response = queryHttp.get(path);
+        return decrypt(path, version, response);
+    }
+
+    /**
+     * @param version
+     *            The {@link ResponseMemo#version()} from before the request
+     */
+    private ResponseMemo.Entry decrypt(String path, long version, Http.Response response) throws KM200Exception {
+        var encrypted = response.body();
+        if (encrypted == null) {
+            throw new KM200Exception("No response when querying " + path);
+        }
+
+        // Parameterized paths like recordings are rarely queried twice and would only grow the memo.
+        var memorize = path.indexOf('?') == -1;
+        var memorized = memorize ? memo.lookup(path, encrypted, version) : null;
+        if (memorized != null) {
+            return memorized;
+        }
+
+        var decrypted = comm.decodeMessage(device, encrypted);
+
+        return switch (decrypted) {
+        case String d when !memorize && d.startsWith("{") -> ResponseMemo.entry(path, encrypted, d);
+        case String d when path.equals("/gateway/firmware") -> memo.remember(path, encrypted, d, version);
+        case String d when d.startsWith("{") -> memo.remember(path, encrypted, d, version);
+
+        case null -> throw new KM200Exception("Could not decrypt query " + path);
+        case String d -> throw new KM200Exception(String.format(
+                "Could not decrypt query %s. Body was:\n%s\n\n Decrypted was:\n%s", path, encrypted, decrypted));
+        };
+    }
+
     private static void assertPath(String path) {
         assertNotBlank(path, "Path must not be blank");
         if (!path.startsWith("/")) {
@@ -250,13 +848,13 @@ public final class KM200 {
         }
     }
 
-    private static void assertNotBlank(String var, String message) {
+    static void assertNotBlank(String var, String message) {
         if (requireNonNull(var).isBlank()) {
             throw new IllegalArgumentException(message);
         }
     }
 
-    private static void assertHttpUri(String var) {
+    static void assertHttpUri(String var) {
         assertNotBlank(var, "Wrong uri " + var);
         var uri = URI.create(var);
 
@@ -271,7 +869,7 @@ public final class KM200 {
         }
     }
 
-    private static void assertNotNegative(int var, String message) {
+    static void assertNotNegative(int var, String message) {
         if (var < 0) {
             throw new IllegalArgumentException(message);
         }
@@ -0,0 +1,134 @@
+package de.malkusch.km200;
+
+import static de.malkusch.km200.KM200.USER_AGENT;
+import static de.malkusch.km200.KM200.assertHttpUri;
+import static de.malkusch.km200.KM200.assertNotBlank;
+import static de.malkusch.km200.KM200.assertNotNegative;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Locale;
+
+import de.malkusch.km200.KM200Exception.ServerError;
+import de.malkusch.km200.http.Http;
+import de.malkusch.km200.http.RetryHttp;
+import de.malkusch.km200.http.SerializedHttp;
+import de.malkusch.km200.http.UrlHttp;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * The state of a gateway which several {@link KM200} instances may share: the
+ * serialized request queue with its transport, the encryption, the response
+ * memo and the metrics.
+ *
+ * @see KM200Registry
+ */
+final class KM200Channel {
+
+    final String uri;
+    final KM200Device device;
+    final KM200Comm comm;
+    final ObjectMapper mapper;
+    final ResponseMemo memo = new ResponseMemo();
+    final KM200Metrics metrics;
+    final SerializedHttp serializedHttp;
+    final Http channelHttp;
+    final Http queryHttp;
+    final Http updateHttp;
+    private final Http transport;
+    private final String credentials;
+
+    KM200Channel(KM200.Builder builder) {
+        validate(builder);
+        var uri = builder.uri;
+        this.uri = uri;
+        this.credentials = credentials(builder);
+
+        var device = new KM200Device();
+        device.setCharSet("UTF-8");
+        device.setGatewayPassword(builder.gatewayPassword.replace("-", ""));
+        device.setPrivatePassword(builder.privatePassword);
+        device.setIP4Address(uri);
+        device.setMD5Salt(builder.salt);
+        device.setInited(true);
+        this.device = device;
+        this.comm = new KM200Comm();
+        this.mapper = builder.mapper != null ? builder.mapper : new ObjectMapper();
+
+        {
+            Http http;
+            if (builder.transport != null) {
+                http = builder.transport;
+            } else if (builder.adaptiveTimeout != null) {
+                http = new UrlHttp(uri.replaceAll("/*$", ""), USER_AGENT, builder.timeout, builder.adaptiveTimeout);
+            } else {
+                http = new UrlHttp(uri.replaceAll("/*$", ""), USER_AGENT, builder.timeout);
+            }
+            transport = http;
+            http = builder.transportDecorator.apply(http);
+
+            /*
+             * The KM200 itself is not thread safe. This proxy serializes all
+             * requests to protect users from a wrong concurrent usage of this
+             * API.
+             */
+            serializedHttp = new SerializedHttp(http, builder.queueCapacity, builder.overflow);
+            http = builder.channelDecorator.apply(serializedHttp);
+            channelHttp = http;
+
+            queryHttp = new RetryHttp(http, builder.retries, IOException.class, ServerError.class);
+            updateHttp = new RetryHttp(http, builder.retries, ServerError.class);
+        }
+        this.metrics = new KM200Metrics(serializedHttp);
+    }
+
+    static void validate(KM200.Builder builder) {
+        assertHttpUri(builder.uri);
+        requireNonNull(builder.timeout);
+        assertNotBlank(builder.gatewayPassword, "gatewayPassword must not be blank");
+        assertNotBlank(builder.privatePassword, "privatePassword must not be blank");
+        assertNotBlank(builder.salt, "salt must not be blank");
+        assertNotNegative(builder.retries, "retries must not be negative");
+        if (builder.transport != null && builder.adaptiveTimeout != null) {
+            throw new IllegalArgumentException("adaptiveTimeout applies only to the default transport");
+        }
+    }
+
+    /**
+     * @return The uri without its cosmetic differences, e.g.
+     *         "http://192.168.0.44:80"
+     */
+    static String normalize(String uri) {
+        assertHttpUri(uri);
+        var parsed = URI.create(uri.replaceAll("/*$", ""));
+        var scheme = parsed.getScheme().toLowerCase(Locale.ROOT);
+        var host = parsed.getHost() != null ? parsed.getHost().toLowerCase(Locale.ROOT) : "";
+        var port = parsed.getPort() != -1 ? parsed.getPort() : scheme.equals("https") ? 443 : 80;
+        var path = parsed.getRawPath() != null ? parsed.getRawPath() : "";
+        return scheme + "://" + host + ":" + port + path;
+    }
+
+    void assertSameCredentials(KM200.Builder builder) {
+        if (!credentials.equals(credentials(builder))) {
+            throw new IllegalArgumentException("Different credentials for the same KM200 " + uri);
+        }
+    }
+
+    private static String credentials(KM200.Builder builder) {
+        return String.join("\n", builder.gatewayPassword.replace("-", ""), builder.privatePassword, builder.salt);
+    }
+
+    /**
+     * Closes the transport, if it is closeable.
+     */
+    void close() {
+        if (transport instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                throw new KM200Exception("Could not close the transport of " + uri, e);
+            }
+        }
+    }
+}
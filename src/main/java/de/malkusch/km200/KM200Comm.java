@@ -1,10 +1,8 @@
 package de.malkusch.km200;
 
-import static java.util.Base64.getEncoder;
 import static java.util.Base64.getMimeDecoder;
 
 import java.io.UnsupportedEncodingException;
-import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -40,18 +38,6 @@ final class KM200Comm {
         return Arrays.copyOf(bytes, i + 1);
     }
 
-    /**
-     * This function adds zero padding to a byte array.
-     */
-    public static byte[] addZeroPadding(byte[] bdata, int bSize, String cSet) throws UnsupportedEncodingException {
-        int encrypt_padchar = bSize - (bdata.length % bSize);
-        byte[] padchars = new String(new char[encrypt_padchar]).getBytes(cSet);
-        byte[] padded_data = new byte[bdata.length + padchars.length];
-        System.arraycopy(bdata, 0, padded_data, 0, bdata.length);
-        System.arraycopy(padchars, 0, padded_data, bdata.length, padchars.length);
-        return padded_data;
-    }
-
     /**
      * This function does the decoding for a new message from the device
      */
@@ -84,25 +70,4 @@ final class KM200Comm {
             throw new KM200Exception("Exception on encoding", e);
         }
     }
-
-    public byte[] encodeMessage(KM200Device device, String data) {
-        byte[] encryptedDataB64 = null;
-
-        try {
-            // --- create cipher
-            byte[] bdata = data.getBytes(device.getCharSet());
-            final Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
-            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(device.getCryptKeyPriv(), "AES"));
-            int bsize = cipher.getBlockSize();
-            final byte[] encryptedData = cipher.doFinal(addZeroPadding(bdata, bsize, device.getCharSet()));
-            try {
-                encryptedDataB64 = getEncoder().encode(encryptedData);
-            } catch (Exception e) {
-            }
-            return encryptedDataB64;
-        } catch (UnsupportedEncodingException | GeneralSecurityException e) {
-            // failure to authenticate
-            throw new KM200Exception("Exception on encoding", e);
-        }
-    }
 }
\ No newline at end of file
@@ -1,13 +1,21 @@
 package de.malkusch.km200;
 
 import static java.lang.Thread.currentThread;
-import static java.util.Arrays.stream;
 
-import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterators.AbstractSpliterator;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-import de.malkusch.km200.KM200Exception.Forbidden;
+import de.malkusch.km200.KM200Exception.Locked;
+import de.malkusch.km200.KM200Exception.NotFound;
+import tools.jackson.core.JacksonException;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 
@@ -24,6 +32,13 @@ public abstract sealed class KM200Endpoint {
         return path;
     }
 
+    /**
+     * @return The KM200's type of this endpoint e.g. "floatValue"
+     */
+    public String type() {
+        return type;
+    }
+
     @Override
     public String toString() {
         return String.format("%s [%s]", path, type);
@@ -46,6 +61,32 @@ public abstract sealed class KM200Endpoint {
             this.recordable = recordable;
         }
 
+        public String value() {
+            return value;
+        }
+
+        /**
+         * @return The allowed values as JSON array, or null
+         */
+        public String allowedValues() {
+            return allowedValues;
+        }
+
+        public boolean writeable() {
+            return writeable;
+        }
+
+        public boolean recordable() {
+            return recordable;
+        }
+
+        /**
+         * @return The complete JSON response of the KM200
+         */
+        public String body() {
+            return body;
+        }
+
         @Override
         public String toString() {
             var writeable = this.writeable ? "w" : "";
@@ -70,15 +111,34 @@ public abstract sealed class KM200Endpoint {
             this.value = value;
         }
 
+        /**
+         * @return The complete JSON response of the KM200
+         */
+        public String value() {
+            return value;
+        }
+
         @Override
         public String toString() {
             return String.format("%s [UNKNOWN]: %s", super.toString(), value);
         }
     }
 
-    static record Factory(KM200 km200, ObjectMapper mapper) {
-
-        private static final String[] WELL_KNOWN_ROOTS = { //
+    /**
+     * Limits the discovery of endpoints.
+     *
+     * @param roots
+     *            The paths where the discovery starts
+     * @param maxDepth
+     *            How many references are followed from a root, i.e. 0 queries
+     *            only the roots
+     * @param maxNodes
+     *            How many paths are queried at most. This also bounds the
+     *            memory of the discovery.
+     */
+    public static record Discovery(List<String> roots, int maxDepth, int maxNodes) {
+
+        private static final List<String> WELL_KNOWN_ROOTS = List.of( //
                 "/system", //
                 "/dhwCircuits", //
                 "/gateway", //
@@ -87,50 +147,140 @@ public abstract sealed class KM200Endpoint {
                 "/notifications", //
                 "/recordings", //
                 "/solarCircuits" //
-        };
+        );
+
+        /**
+         * All well known roots without a depth limit and up to 10000 paths.
+         */
+        public static final Discovery ALL = new Discovery(WELL_KNOWN_ROOTS, Integer.MAX_VALUE, 10_000);
 
-        public Stream<KM200Endpoint> build() {
-            return stream(WELL_KNOWN_ROOTS) //
-                    .flatMap(this::traverse);
+        public Discovery {
+            roots = List.copyOf(roots);
+            if (roots.isEmpty()) {
+                throw new IllegalArgumentException("roots must not be empty");
+            }
+            if (maxDepth < 0 || maxNodes < 1) {
+                throw new IllegalArgumentException("maxDepth must not be negative and maxNodes must be positive");
+            }
         }
 
-        private static final Value FIRMWARE = new Value("/gateway/firmware", "firmware", "firmware", null, false, false,
-                "firmware");
+        public Discovery roots(String... roots) {
+            return new Discovery(List.of(roots), maxDepth, maxNodes);
+        }
 
-        private Stream<KM200Endpoint> traverse(String path) throws KM200Exception {
-            if (path.equals(FIRMWARE.path())) {
-                return Stream.of(FIRMWARE);
-            }
+        public Discovery maxDepth(int maxDepth) {
+            return new Discovery(roots, maxDepth, maxNodes);
+        }
 
-            try {
-                var response = km200.query(path);
+        public Discovery maxNodes(int maxNodes) {
+            return new Discovery(roots, maxDepth, maxNodes);
+        }
+    }
 
-                var json = mapper.readTree(response);
-                var type = json.path("type").asText();
+    static record Factory(KM200 km200, ObjectMapper mapper) {
 
-                return switch (type) {
+        public Stream<KM200Endpoint> build(Discovery discovery) {
+            return StreamSupport.stream(new Traversal(discovery), false);
+        }
 
-                case "stringValue", "systeminfo", "floatValue", //
-                        "arrayData", "switchProgram", //
-                        "errorList", "yRecording" -> Stream.of(value(path, type, json));
+        private static final Value FIRMWARE = new Value("/gateway/firmware", "firmware", "firmware", null, false, false,
+                "firmware");
 
-                case "refEnum" -> StreamSupport //
-                        .stream(json.get("references").spliterator(), false) //
-                        .map(it -> it.get("id").asText()) //
-                        .flatMap(this::traverse);
+        private static record Node(String path, int depth) {
+        }
 
-                default -> Stream.of(new UnknownNode(path, type, json.toString()));
-                };
+        /**
+         * Traverses each root breadth first and queries a path only once, even
+         * if it is referenced several times. Each advance queries until it
+         * found the next endpoint.
+         */
+        private final class Traversal extends AbstractSpliterator<KM200Endpoint> {
+            private final Discovery discovery;
+            private final Iterator<String> roots;
+            private final Queue<Node> queue = new ArrayDeque<>();
+            private final Set<String> visited = new HashSet<>();
+
+            private Traversal(Discovery discovery) {
+                super(Long.MAX_VALUE, ORDERED | DISTINCT | NONNULL);
+                this.discovery = discovery;
+                this.roots = discovery.roots().iterator();
+            }
 
-            } catch (Forbidden e) {
-                return Stream.of(new ForbiddenNode(path));
+            @Override
+            public boolean tryAdvance(Consumer<? super KM200Endpoint> action) {
+                while (true) {
+                    var node = queue.poll();
+                    if (node == null) {
+                        if (!roots.hasNext()) {
+                            return false;
+                        }
+                        offer(roots.next(), 0);
+                        continue;
+                    }
+                    if (currentThread().isInterrupted()) {
+                        return false;
+                    }
+                    var endpoint = visit(node);
+                    if (endpoint != null) {
+                        action.accept(endpoint);
+                        return true;
+                    }
+                }
+            }
 
-            } catch (IOException e) {
-                throw new KM200Exception("Traversing " + path + " failed", e);
+            private void offer(String path, int depth) {
+                if (depth <= discovery.maxDepth() && visited.size() < discovery.maxNodes() && visited.add(path)) {
+                    queue.add(new Node(path, depth));
+                }
+            }
 
-            } catch (InterruptedException e) {
-                currentThread().interrupt();
-                return Stream.empty();
+            /**
+             * @return The endpoint, or null if the path is a reference list
+             */
+            private KM200Endpoint visit(Node node) throws KM200Exception {
+                var path = node.path();
+                if (path.equals(FIRMWARE.path())) {
+                    return FIRMWARE;
+                }
+
+                try {
+                    JsonNode json;
+                    switch (km200.tryQuery(path)) {
+                    case KM200Result.Value value -> json = mapper.readTree(value.json());
+                    case KM200Result.Forbidden forbidden -> {
+                        return new ForbiddenNode(path);
+                    }
+                    case KM200Result.NotFound notFound -> throw new NotFound(path + " was not found");
+                    case KM200Result.Locked locked -> throw new Locked(path + " was locked");
+                    case KM200Result.Failure failure when failure.cause() instanceof KM200Exception cause -> throw cause;
+                    case KM200Result.Failure failure ->
+                        throw new KM200Exception("Traversing " + path + " failed", failure.cause());
+                    }
+                    var type = json.path("type").asText();
+
+                    return switch (type) {
+
+                    case "stringValue", "systeminfo", "floatValue", //
+                            "arrayData", "switchProgram", //
+                            "errorList", "yRecording" -> value(path, type, json);
+
+                    case "refEnum" -> {
+                        for (var reference : json.get("references")) {
+                            offer(reference.get("id").asText(), node.depth() + 1);
+                        }
+                        yield null;
+                    }
+
+                    default -> new UnknownNode(path, type, json.toString());
+                    };
+
+                } catch (JacksonException e) {
+                    throw new KM200Exception("Traversing " + path + " failed", e);
+
+                } catch (InterruptedException e) {
+                    currentThread().interrupt();
+                    return null;
+                }
             }
         }
 
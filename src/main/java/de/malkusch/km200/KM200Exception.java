@@ -3,12 +3,31 @@ package de.malkusch.km200;
 public class KM200Exception extends RuntimeException {
     private static final long serialVersionUID = -3012972913411313232L;
 
+    private final byte[] responseBody;
+
     public KM200Exception(String message) {
+        this(message, (byte[]) null);
+    }
+
+    /**
+     * @param responseBody
+     *            The body of the KM200's error response
+     */
+    public KM200Exception(String message, byte[] responseBody) {
         super(message);
+        this.responseBody = responseBody;
     }
 
     public KM200Exception(String message, Throwable cause) {
         super(message, cause);
+        this.responseBody = null;
+    }
+
+    /**
+     * @return The body of the KM200's error response, or null
+     */
+    public byte[] responseBody() {
+        return responseBody;
     }
 
     public static class NotFound extends KM200Exception {
@@ -17,6 +36,10 @@ public class KM200Exception extends RuntimeException {
         public NotFound(String message) {
             super(message);
         }
+
+        public NotFound(String message, byte[] responseBody) {
+            super(message, responseBody);
+        }
     }
 
     public static class ServerError extends KM200Exception {
@@ -25,6 +48,10 @@ public class KM200Exception extends RuntimeException {
         public ServerError(String message) {
             super(message);
         }
+
+        public ServerError(String message, byte[] responseBody) {
+            super(message, responseBody);
+        }
     }
 
     public static class BadRequest extends KM200Exception {
@@ -33,6 +60,10 @@ public class KM200Exception extends RuntimeException {
         public BadRequest(String message) {
             super(message);
         }
+
+        public BadRequest(String message, byte[] responseBody) {
+            super(message, responseBody);
+        }
     }
 
     public static class Forbidden extends KM200Exception {
@@ -41,6 +72,10 @@ public class KM200Exception extends RuntimeException {
         public Forbidden(String message) {
             super(message);
         }
+
+        public Forbidden(String message, byte[] responseBody) {
+            super(message, responseBody);
+        }
     }
 
     public static class Locked extends KM200Exception {
@@ -49,5 +84,20 @@ public class KM200Exception extends RuntimeException {
         public Locked(String message) {
             super(message);
         }
+
+        public Locked(String message, byte[] responseBody) {
+            super(message, responseBody);
+        }
+    }
+
+    /**
+     * Too many requests were waiting for the KM200.
+     */
+    public static class Overloaded extends KM200Exception {
+        private static final long serialVersionUID = -2617329871960462134L;
+
+        public Overloaded(String message) {
+            super(message);
+        }
     }
 }
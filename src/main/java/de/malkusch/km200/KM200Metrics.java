@@ -0,0 +1,62 @@
+package de.malkusch.km200;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import de.malkusch.km200.http.SerializedHttp;
+
+/**
+ * Counters about the usage of a {@link KM200}.
+ *
+ * This class is thread safe.
+ */
+public final class KM200Metrics {
+
+    private final LongAdder suppressedUpdates = new LongAdder();
+    private final SerializedHttp queue;
+
+    KM200Metrics(SerializedHttp queue) {
+        this.queue = queue;
+    }
+
+    void suppressedUpdate() {
+        suppressedUpdates.increment();
+    }
+
+    /**
+     * @return The amount of updates which were not sent, because the KM200
+     *         already had the value.
+     * @see KM200#skipRedundantUpdates(java.time.Duration)
+     */
+    public long suppressedUpdates() {
+        return suppressedUpdates.sum();
+    }
+
+    /**
+     * @return The amount of requests currently waiting for the KM200
+     */
+    public int queueDepth() {
+        return queue.queueDepth();
+    }
+
+    /**
+     * @return The highest amount of requests which waited for the KM200
+     */
+    public int maxQueueDepth() {
+        return queue.maxQueueDepth();
+    }
+
+    /**
+     * @return The amount of requests which were rejected or dropped, because
+     *         too many requests were waiting.
+     * @see KM200.Builder#queue(int, SerializedHttp.Overflow)
+     */
+    public long overloads() {
+        return queue.overloads();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("suppressedUpdates=%d, queueDepth=%d, maxQueueDepth=%d, overloads=%d",
+                suppressedUpdates(), queueDepth(), maxQueueDepth(), overloads());
+    }
+}
@@ -0,0 +1,24 @@
+package de.malkusch.km200;
+
+/**
+ * An entry of an errorList endpoint e.g. /notifications.
+ *
+ * @param displayCode
+ *            The code which the heater displays e.g. "H07" (dcd)
+ * @param causeCode
+ *            The cause code e.g. "1038" (ccd)
+ * @param category
+ *            The category (cat), or null
+ * @param time
+ *            The time of the notification as reported by the KM200 (t), or
+ *            null
+ * @param json
+ *            The complete entry
+ */
+public record KM200Notification(String displayCode, String causeCode, String category, String time, String json) {
+
+    @Override
+    public String toString() {
+        return String.format("%s/%s %s", displayCode, causeCode, time != null ? time : "");
+    }
+}
@@ -0,0 +1,135 @@
+package de.malkusch.km200;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import tools.jackson.databind.JsonNode;
+
+/**
+ * Polls an errorList endpoint and reports only new and cleared entries.
+ *
+ * <pre>
+ * {@code
+ * var watcher = new KM200NotificationWatcher(km200);
+ * while (true) {
+ *     var changes = watcher.poll();
+ *     changes.added().forEach(it -> System.out.println("New: " + it));
+ *     changes.cleared().forEach(it -> System.out.println("Cleared: " + it));
+ *     Thread.sleep(5000);
+ * }
+ * }
+ * </pre>
+ *
+ * Entries are identified by a 64 bit fingerprint of their JSON. An unchanged
+ * response is recognized without decoding it again. This class is thread
+ * safe.
+ */
+public final class KM200NotificationWatcher {
+
+    private final KM200 km200;
+    private final String path;
+    private JsonNode lastResponse;
+    private long[] fingerprints = new long[0];
+    private List<KM200Notification> notifications = List.of();
+
+    public static record Changes(List<KM200Notification> added, List<KM200Notification> cleared) {
+
+        public boolean isEmpty() {
+            return added.isEmpty() && cleared.isEmpty();
+        }
+    }
+
+    private static final Changes NO_CHANGES = new Changes(List.of(), List.of());
+
+    /**
+     * Watches /notifications.
+     */
+    public KM200NotificationWatcher(KM200 km200) {
+        this(km200, "/notifications");
+    }
+
+    public KM200NotificationWatcher(KM200 km200, String path) {
+        this.km200 = requireNonNull(km200);
+        this.path = requireNonNull(path);
+    }
+
+    /**
+     * Queries the endpoint and compares it to the previous poll. The first
+     * poll reports all entries as added.
+     */
+    public synchronized Changes poll() throws KM200Exception, IOException, InterruptedException {
+        var response = km200.queryJson(path);
+        if (response == lastResponse) {
+            return NO_CHANGES;
+        }
+        lastResponse = response;
+
+        var values = response.path("values");
+        var current = new ArrayList<KM200Notification>(values.size());
+        var currentFingerprints = new long[values.size()];
+        for (var value : values) {
+            var notification = notification(value);
+            currentFingerprints[current.size()] = fingerprint(notification.json());
+            current.add(notification);
+        }
+
+        var sortedCurrent = currentFingerprints.clone();
+        Arrays.sort(sortedCurrent);
+        var added = new ArrayList<KM200Notification>();
+        for (int i = 0; i < current.size(); i++) {
+            if (Arrays.binarySearch(fingerprints, currentFingerprints[i]) < 0) {
+                added.add(current.get(i));
+            }
+        }
+        var cleared = new ArrayList<KM200Notification>();
+        for (var notification : notifications) {
+            if (Arrays.binarySearch(sortedCurrent, fingerprint(notification.json())) < 0) {
+                cleared.add(notification);
+            }
+        }
+
+        fingerprints = sortedCurrent;
+        notifications = List.copyOf(current);
+        if (added.isEmpty() && cleared.isEmpty()) {
+            return NO_CHANGES;
+        }
+        return new Changes(List.copyOf(added), List.copyOf(cleared));
+    }
+
+    /**
+     * @return The entries of the last poll
+     */
+    public synchronized List<KM200Notification> notifications() {
+        return notifications;
+    }
+
+    private static KM200Notification notification(JsonNode value) {
+        return new KM200Notification( //
+                text(value, "dcd"), //
+                text(value, "ccd"), //
+                text(value, "cat"), //
+                text(value, "t"), //
+                value.toString());
+    }
+
+    private static String text(JsonNode value, String field) {
+        var node = value.get(field);
+        return node == null || node.isNull() ? null : node.asText();
+    }
+
+    /**
+     * FNV-1a
+     */
+    private static long fingerprint(String json) {
+        var hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < json.length(); i++) {
+            hash ^= json.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
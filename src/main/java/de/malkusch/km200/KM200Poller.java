@@ -0,0 +1,270 @@
+package de.malkusch.km200;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import de.malkusch.km200.http.Priority;
+import tools.jackson.databind.JsonNode;
+
+/**
+ * Polls paths with intervals which follow how often their values change.
+ *
+ * Each path is polled between its min and max interval. The poller estimates
+ * the change rate of each path from the recent polls and polls at twice that
+ * rate, i.e. a stable path drifts towards its max interval and a volatile path
+ * towards its min interval. A floatValue starts at its min interval, other
+ * types at their max interval. A failed poll doubles the interval up to the
+ * max interval. Polls use {@link Priority#BACKGROUND}.
+ *
+ * <pre>
+ * {@code
+ * try (var poller = new KM200Poller(km200, Duration.ofSeconds(10), Duration.ofHours(1),
+ *         (path, json) -> System.out.println(path + ": " + json.get("value")))) {
+ *
+ *     poller.watch("/heatingCircuits/hc1/roomtemperature");
+ *     poller.watch("/system/info", Duration.ofMinutes(10), Duration.ofDays(1));
+ *     ...
+ *     System.out.println(poller.stats());
+ * }
+ * }
+ * </pre>
+ */
+public final class KM200Poller implements AutoCloseable {
+
+    /**
+     * The weight of older polls in the change rate estimation.
+     */
+    private static final double DECAY = 0.8;
+
+    private final KM200 km200;
+    private final Duration min;
+    private final Duration max;
+    private final Listener listener;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public static interface Listener {
+
+        /**
+         * Is called with the first value and every changed value.
+         */
+        void changed(String path, JsonNode json);
+    }
+
+    /**
+     * @param fixedRatePolls
+     *            The polls which polling every path at its min interval would
+     *            have needed
+     * @param gatewayTime
+     *            The time the polls did take
+     * @param savedGatewayTime
+     *            The estimated time which polling at the min intervals would
+     *            have taken additionally
+     */
+    public static record Stats(long polls, long fixedRatePolls, long failures, Duration gatewayTime,
+            Duration savedGatewayTime) {
+    }
+
+    private final class Watch {
+        private final String path;
+        private final long minNanos;
+        private final long maxNanos;
+        private final long added = System.nanoTime();
+        private JsonNode value;
+        private long intervalNanos;
+        private double changes;
+        private double observedNanos;
+        private long polls;
+        private long failures;
+        private long gatewayNanos;
+        private volatile boolean cancelled;
+
+        private Watch(String path, Duration min, Duration max) {
+            this.path = path;
+            this.minNanos = min.toNanos();
+            this.maxNanos = max.toNanos();
+            this.intervalNanos = minNanos;
+        }
+
+        private void poll() {
+            if (cancelled) {
+                return;
+            }
+            var start = System.nanoTime();
+            JsonNode json;
+            try {
+                json = Priority.BACKGROUND.call(() -> km200.queryJson(path));
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+
+            } catch (Exception e) {
+                synchronized (this) {
+                    count(start);
+                    failures++;
+                    intervalNanos = Math.clamp(intervalNanos * 2, minNanos, maxNanos);
+                }
+                schedule();
+                return;
+            }
+
+            var current = json.has("value") ? json.get("value") : json.has("values") ? json.get("values") : json;
+            boolean changed;
+            synchronized (this) {
+                count(start);
+                changed = value == null || !value.equals(current);
+                if (value == null) {
+                    intervalNanos = "floatValue".equals(json.path("type").asText()) ? minNanos : maxNanos;
+                } else {
+                    observe(changed);
+                }
+                value = current;
+            }
+            if (changed) {
+                // The JSON is shared by KM200's memo, the listener may modify its copy.
+                notify(json.deepCopy());
+            }
+            schedule();
+        }
+
+        private void count(long start) {
+            polls++;
+            gatewayNanos += System.nanoTime() - start;
+        }
+
+        /**
+         * A failing listener is neither a gateway failure nor a reason to stop
+         * polling.
+         */
+        private void notify(JsonNode json) {
+            try {
+                listener.changed(path, json);
+            } catch (RuntimeException e) {
+                var thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+
+        /**
+         * Adapts the interval to twice the estimated change rate, but grows it
+         * at most by a factor of 2.
+         */
+        private void observe(boolean changed) {
+            changes = changes * DECAY + (changed ? 1 : 0);
+            observedNanos = observedNanos * DECAY + intervalNanos;
+            var target = changes > 0 ? (long) (observedNanos / changes / 2) : Long.MAX_VALUE;
+            intervalNanos = Math.clamp(Math.min(target, intervalNanos * 2), minNanos, maxNanos);
+        }
+
+        private synchronized long interval() {
+            return intervalNanos;
+        }
+
+        private void schedule() {
+            if (!cancelled && !scheduler.isShutdown()) {
+                scheduler.schedule(this::poll, interval(), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * @param min
+     *            The default min interval
+     * @param max
+     *            The default max interval
+     */
+    public KM200Poller(KM200 km200, Duration min, Duration max, Listener listener) {
+        assertBounds(min, max);
+        this.km200 = requireNonNull(km200);
+        this.min = min;
+        this.max = max;
+        this.listener = requireNonNull(listener);
+        this.scheduler = Executors
+                .newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("km200-poller").factory());
+    }
+
+    /**
+     * Polls the path within the default bounds.
+     */
+    public void watch(String path) {
+        watch(path, min, max);
+    }
+
+    /**
+     * Polls the path within its own bounds. The first poll happens
+     * immediately.
+     */
+    public void watch(String path, Duration min, Duration max) {
+        assertBounds(min, max);
+        var watch = new Watch(requireNonNull(path), min, max);
+        var previous = watches.put(path, watch);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        scheduler.execute(watch::poll);
+    }
+
+    public void unwatch(String path) {
+        var watch = watches.remove(path);
+        if (watch != null) {
+            watch.cancelled = true;
+        }
+    }
+
+    /**
+     * @return The current poll interval of each path
+     */
+    public Map<String, Duration> intervals() {
+        var intervals = new TreeMap<String, Duration>();
+        watches.forEach((path, watch) -> intervals.put(path, Duration.ofNanos(watch.interval())));
+        return intervals;
+    }
+
+    public Stats stats() {
+        var now = System.nanoTime();
+        long polls = 0;
+        long fixedRatePolls = 0;
+        long failures = 0;
+        long gatewayNanos = 0;
+        long savedNanos = 0;
+        for (var watch : watches.values()) {
+            synchronized (watch) {
+                var fixedRate = 1 + (now - watch.added) / watch.minNanos;
+                polls += watch.polls;
+                fixedRatePolls += fixedRate;
+                failures += watch.failures;
+                gatewayNanos += watch.gatewayNanos;
+                if (watch.polls > 0 && fixedRate > watch.polls) {
+                    savedNanos += (fixedRate - watch.polls) * (watch.gatewayNanos / watch.polls);
+                }
+            }
+        }
+        return new Stats(polls, fixedRatePolls, failures, Duration.ofNanos(gatewayNanos),
+                Duration.ofNanos(savedNanos));
+    }
+
+    private static void assertBounds(Duration min, Duration max) {
+        if (!min.isPositive() || max.compareTo(min) < 0) {
+            throw new IllegalArgumentException("min must be positive and not greater than max");
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package de.malkusch.km200;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * The measured capacity of a KM200 gateway.
+ *
+ * A profile is measured with {@link de.malkusch.km200.profile.KM200Profiler}
+ * and applied with {@link KM200.Builder#profile(KM200Profile)}:
+ *
+ * <pre>
+ * {@code
+ * var km200 = KM200.builder()
+ *         ...
+ *         .profile(KM200Profile.load(Path.of("km200-profile.json")))
+ *         .build();
+ * }
+ * </pre>
+ *
+ * @param timeout
+ *            The IO timeout which covers the slowest measured endpoint
+ * @param pause
+ *            The pause between two requests which the gateway sustained
+ *            without failures
+ * @param recovery
+ *            How long the gateway needed to answer again after it was
+ *            overloaded, or zero if it was never overloaded
+ * @param endpoints
+ *            The service times of the profiled endpoints
+ */
+public record KM200Profile(Duration timeout, Duration pause, Duration recovery, List<Endpoint> endpoints) {
+
+    /**
+     * The service time of one endpoint, measured from sending the request
+     * until receiving the complete response.
+     */
+    public static record Endpoint(String path, Duration median, Duration p99, Duration max) {
+    }
+
+    public KM200Profile {
+        requireNonNull(timeout);
+        requireNonNull(pause);
+        requireNonNull(recovery);
+        endpoints = List.copyOf(endpoints);
+    }
+
+    public Optional<Endpoint> endpoint(String path) {
+        return endpoints.stream().filter(it -> it.path.equals(path)).findFirst();
+    }
+
+    public void save(Path file) throws IOException {
+        var mapper = new ObjectMapper();
+        var json = mapper.createObjectNode();
+        json.put("timeoutMillis", timeout.toMillis());
+        json.put("pauseMillis", pause.toMillis());
+        json.put("recoveryMillis", recovery.toMillis());
+        var endpoints = json.putArray("endpoints");
+        for (var endpoint : this.endpoints) {
+            endpoints.addObject() //
+                    .put("path", endpoint.path) //
+                    .put("medianMillis", endpoint.median.toMillis()) //
+                    .put("p99Millis", endpoint.p99.toMillis()) //
+                    .put("maxMillis", endpoint.max.toMillis());
+        }
+        Files.writeString(file, mapper.writerWithDefaultPrettyPrinter().writeValueAsString(json), UTF_8);
+    }
+
+    public static KM200Profile load(Path file) throws IOException {
+        try {
+            var json = new ObjectMapper().readTree(Files.readString(file, UTF_8));
+            var endpoints = new ArrayList<Endpoint>();
+            for (var endpoint : json.path("endpoints")) {
+                endpoints.add(new Endpoint(endpoint.path("path").asText(), millis(endpoint, "medianMillis"),
+                        millis(endpoint, "p99Millis"), millis(endpoint, "maxMillis")));
+            }
+            return new KM200Profile(millis(json, "timeoutMillis"), millis(json, "pauseMillis"),
+                    millis(json, "recoveryMillis"), endpoints);
+
+        } catch (JacksonException e) {
+            throw new IOException("Invalid profile " + file, e);
+        }
+    }
+
+    private static Duration millis(JsonNode json, String field) throws IOException {
+        var value = json.get(field);
+        if (value == null || !value.isIntegralNumber()) {
+            throw new IOException("Profile misses " + field);
+        }
+        return Duration.ofMillis(value.asLong());
+    }
+}
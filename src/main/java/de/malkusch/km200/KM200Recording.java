@@ -0,0 +1,237 @@
+package de.malkusch.km200;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAmount;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * The samples of a yRecording endpoint for one interval (a day, month or
+ * year), decoded into primitive columns.
+ *
+ * The KM200 responds with a JSON like this:
+ *
+ * <pre>
+ * {@code
+ * {"id":"/recordings/heatSources/total/energyMonitoring/consumption?interval=2023-01-15",
+ *  "type":"yRecording","interval":"2023-01-15","sampleRate":"P1H",
+ *  "values":[{"y":1.5,"c":60},{"y":0,"c":0},…]}
+ * }
+ * </pre>
+ *
+ * A sample without measurements (c is 0) or a null sample is missing. The
+ * timestamps are derived from the interval start and the sample rate in the
+ * system's default time zone.
+ *
+ * @see KM200#recording(String, LocalDate)
+ */
+public final class KM200Recording {
+
+    private final String path;
+    private final String interval;
+    private final long[] timestamps;
+    private final double[] values;
+    private final BitSet missing;
+
+    private KM200Recording(String path, String interval, long[] timestamps, double[] values, BitSet missing) {
+        this.path = path;
+        this.interval = interval;
+        this.timestamps = timestamps;
+        this.values = values;
+        this.missing = missing;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    /**
+     * @return The interval e.g. "2023-01-15", "2023-01" or "2023"
+     */
+    public String interval() {
+        return interval;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @return The epoch milliseconds when the sample started
+     */
+    public long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * @return The value, or NaN if the sample is missing
+     */
+    public double value(int index) {
+        return values[index];
+    }
+
+    public boolean isMissing(int index) {
+        return missing.get(index);
+    }
+
+    public long[] timestamps() {
+        return timestamps.clone();
+    }
+
+    /**
+     * @return The values, NaN for missing samples
+     */
+    public double[] values() {
+        return values.clone();
+    }
+
+    public BitSet missing() {
+        return (BitSet) missing.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s?interval=%s [%d samples, %d missing]", path, interval, size(),
+                missing.cardinality());
+    }
+
+    static String interval(LocalDate day) {
+        return day.toString();
+    }
+
+    static String interval(YearMonth month) {
+        return month.toString();
+    }
+
+    static String interval(Year year) {
+        return year.toString();
+    }
+
+    /**
+     * Decodes the recording with a streaming parser without building a JSON
+     * tree.
+     */
+    static KM200Recording parse(ObjectMapper mapper, String path, String interval, String json)
+            throws KM200Exception {
+
+        var values = new double[32];
+        var missing = new BitSet();
+        var size = 0;
+        String sampleRate = null;
+
+        try (JsonParser parser = mapper.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new KM200Exception("Recording " + path + " is not a JSON object");
+            }
+            for (var token = parser.nextToken(); token != null && token != JsonToken.END_OBJECT; token = parser
+                    .nextToken()) {
+
+                if (token == JsonToken.START_ARRAY && "values".equals(parser.currentName())) {
+                    for (token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                        if (size == values.length) {
+                            values = Arrays.copyOf(values, size * 2);
+                        }
+                        var value = switch (token) {
+                        case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+                        case START_OBJECT -> parseSample(parser);
+                        case null -> throw new KM200Exception("Recording " + path + " ended unexpectedly");
+                        default -> {
+                            parser.skipChildren();
+                            yield Double.NaN;
+                        }
+                        };
+                        values[size] = value;
+                        if (Double.isNaN(value)) {
+                            missing.set(size);
+                        }
+                        size++;
+                    }
+
+                } else if (token.isScalarValue() && "sampleRate".equals(parser.currentName())) {
+                    sampleRate = parser.getValueAsString();
+
+                } else if (token.isScalarValue() && "interval".equals(parser.currentName())) {
+                    interval = parser.getValueAsString();
+
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+        } catch (JacksonException e) {
+            throw new KM200Exception("Could not parse recording " + path, e);
+        }
+
+        values = Arrays.copyOf(values, size);
+        var timestamps = timestamps(path, interval, sampleRate, size);
+        return new KM200Recording(path, interval, timestamps, values, missing);
+    }
+
+    /**
+     * Parses a sample {"y":1.5,"c":60}, the parser is positioned at its start.
+     */
+    private static double parseSample(JsonParser parser) throws JacksonException {
+        var value = Double.NaN;
+        var count = -1;
+        for (var token = parser.nextToken(); token != JsonToken.END_OBJECT; token = parser.nextToken()) {
+            if (token.isNumeric() && "y".equals(parser.currentName())) {
+                value = parser.getDoubleValue();
+
+            } else if (token.isNumeric() && "c".equals(parser.currentName())) {
+                count = parser.getIntValue();
+
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return count == 0 ? Double.NaN : value;
+    }
+
+    private static long[] timestamps(String path, String interval, String sampleRate, int size) {
+        LocalDateTime start;
+        TemporalAmount step;
+        try {
+            switch (interval.length()) {
+            case 4 -> {
+                start = Year.parse(interval).atDay(1).atStartOfDay();
+                step = Period.ofMonths(1);
+            }
+            case 7 -> {
+                start = YearMonth.parse(interval).atDay(1).atStartOfDay();
+                step = Period.ofDays(1);
+            }
+            default -> {
+                start = LocalDate.parse(interval).atStartOfDay();
+                step = Duration.ofHours(1);
+            }
+            }
+            if (sampleRate != null) {
+                step = sampleRate.contains("T") ? Duration.parse(sampleRate) : Period.parse(sampleRate);
+            }
+
+        } catch (DateTimeParseException e) {
+            throw new KM200Exception("Recording " + path + " has an invalid interval " + interval, e);
+        }
+
+        var zone = ZoneId.systemDefault();
+        var timestamps = new long[size];
+        var time = start;
+        for (int i = 0; i < size; i++) {
+            timestamps[i] = time.atZone(zone).toInstant().toEpochMilli();
+            time = time.plus(step);
+        }
+        return timestamps;
+    }
+}
@@ -0,0 +1,104 @@
+package de.malkusch.km200;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.malkusch.km200.KM200.Probe;
+
+/**
+ * Hands out {@link KM200} instances which share one channel per gateway
+ * within the JVM.
+ *
+ * The KM200 can't handle concurrent requests. Instances of the same gateway
+ * share their request queue, transport, response memo and metrics, so that
+ * their requests are serialized as well:
+ *
+ * <pre>
+ * {@code
+ * try (var km200 = KM200.builder()
+ *         .uri("http://192.168.0.44")
+ *         ...
+ *         .buildShared()) {
+ *
+ *     km200.queryString("/gateway/DateTime");
+ * }
+ * }
+ * </pre>
+ *
+ * Gateways are identified by their normalized uri. The channel is configured
+ * by the first instance, the transport, decorator, retry and queue options of
+ * later instances are ignored. Their credentials must be the same. The
+ * channel is closed when its last instance is closed.
+ */
+public final class KM200Registry {
+
+    private static final Map<String, Shared> channels = new HashMap<>();
+
+    private static final class Shared {
+        private final KM200Channel channel;
+        private int references;
+
+        private Shared(KM200Channel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private KM200Registry() {
+    }
+
+    public static KM200 acquire(KM200.Builder builder) throws KM200Exception, IOException, InterruptedException {
+        KM200Channel.validate(builder);
+        var key = KM200Channel.normalize(builder.uri);
+
+        Shared shared;
+        boolean created;
+        synchronized (channels) {
+            shared = channels.get(key);
+            created = shared == null;
+            if (created) {
+                shared = new Shared(new KM200Channel(builder));
+                channels.put(key, shared);
+            } else {
+                shared.channel.assertSameCredentials(builder);
+            }
+            shared.references++;
+        }
+
+        var km200 = new KM200(shared.channel, builder, true);
+        if (created && builder.probe == Probe.EAGER) {
+            try {
+                km200.probeEagerly();
+
+            } catch (IllegalArgumentException | InterruptedException e) {
+                km200.close();
+                throw e;
+            }
+        }
+        return km200;
+    }
+
+    static void release(KM200Channel channel) {
+        var key = KM200Channel.normalize(channel.uri);
+        synchronized (channels) {
+            var shared = channels.get(key);
+            if (shared == null || shared.channel != channel || --shared.references > 0) {
+                return;
+            }
+            channels.remove(key);
+        }
+        channel.close();
+    }
+
+    /**
+     * @return The amount of open instances which share the channel of that
+     *         uri
+     */
+    public static int references(String uri) {
+        var key = KM200Channel.normalize(uri);
+        synchronized (channels) {
+            var shared = channels.get(key);
+            return shared != null ? shared.references : 0;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package de.malkusch.km200;
+
+/**
+ * The outcome of {@link KM200#tryQuery(String)}.
+ *
+ * Forbidden, unknown and locked paths are routine while polling or exploring
+ * the KM200. They are results instead of exceptions.
+ *
+ * <pre>
+ * {@code
+ * switch (km200.tryQuery(path)) {
+ * case KM200Result.Value value -> System.out.println(value.json());
+ * case KM200Result.Forbidden forbidden -> {}
+ * case KM200Result.NotFound notFound -> {}
+ * case KM200Result.Locked locked -> {}
+ * case KM200Result.Failure failure -> failure.cause().printStackTrace();
+ * }
+ * }
+ * </pre>
+ */
+public sealed interface KM200Result {
+
+    String path();
+
+    static record Value(String path, String json) implements KM200Result {
+    }
+
+    static record Forbidden(String path) implements KM200Result {
+    }
+
+    static record NotFound(String path) implements KM200Result {
+    }
+
+    static record Locked(String path) implements KM200Result {
+    }
+
+    /**
+     * @param cause
+     *            Either a {@link KM200Exception} or an
+     *            {@link java.io.IOException}
+     */
+    static record Failure(String path, Exception cause) implements KM200Result {
+    }
+}
@@ -0,0 +1,118 @@
+package de.malkusch.km200;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * The result of {@link KM200#snapshot(java.util.Collection)}.
+ *
+ * Values are addressed by the index of their path in the queried collection.
+ * A path resulted either in a numeric value, a string value or an error.
+ */
+public final class KM200Snapshot {
+
+    private final String[] paths;
+    private final double[] values;
+    private final String[] strings;
+    private final Exception[] errors;
+    private final long[] timestamps;
+
+    KM200Snapshot(String[] paths) {
+        this.paths = paths;
+        this.values = new double[paths.length];
+        this.strings = new String[paths.length];
+        this.errors = new Exception[paths.length];
+        this.timestamps = new long[paths.length];
+        Arrays.fill(values, Double.NaN);
+    }
+
+    void numeric(int index, double value, long timestamp) {
+        values[index] = value;
+        timestamps[index] = timestamp;
+    }
+
+    void string(int index, String value, long timestamp) {
+        strings[index] = value;
+        timestamps[index] = timestamp;
+    }
+
+    void error(int index, Exception error, long timestamp) {
+        errors[index] = error;
+        timestamps[index] = timestamp;
+    }
+
+    public int size() {
+        return paths.length;
+    }
+
+    public String path(int index) {
+        return paths[index];
+    }
+
+    /**
+     * @return The index of the path, or -1 if the path was not queried
+     */
+    public int indexOf(String path) {
+        for (int i = 0; i < paths.length; i++) {
+            if (paths[i].equals(path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isNumeric(int index) {
+        return errors[index] == null && strings[index] == null;
+    }
+
+    /**
+     * @return The numeric value, or NaN if the path has no numeric value
+     */
+    public double doubleValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return All numeric values by index, NaN for non numeric values
+     */
+    public double[] doubleValues() {
+        return values.clone();
+    }
+
+    /**
+     * @return The string value, or null if the path has no string value
+     */
+    public String stringValue(int index) {
+        return strings[index];
+    }
+
+    /**
+     * @return The error of the path, or null if the query succeeded
+     */
+    public Exception error(int index) {
+        return errors[index];
+    }
+
+    public boolean hasErrors() {
+        for (var error : errors) {
+            if (error != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return When the response of the path was received
+     */
+    public Instant timestamp(int index) {
+        return Instant.ofEpochMilli(timestamps[index]);
+    }
+
+    /**
+     * @return The epoch milliseconds by index when the responses were received
+     */
+    public long[] timestampMillis() {
+        return timestamps.clone();
+    }
+}
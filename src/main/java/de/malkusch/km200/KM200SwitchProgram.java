@@ -0,0 +1,173 @@
+package de.malkusch.km200;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import tools.jackson.databind.JsonNode;
+
+/**
+ * A heating time schedule of a switchProgram endpoint e.g.
+ * /heatingCircuits/hc1/switchPrograms/A.
+ *
+ * The switch points are kept ordered by day and time, so that two programs
+ * with the same switch points are equal.
+ *
+ * @see KM200#querySwitchProgram(String)
+ * @see KM200#update(String, KM200SwitchProgram)
+ */
+public final class KM200SwitchProgram {
+
+    public static record SwitchPoint(DayOfWeek day, LocalTime time, String setpoint) {
+
+        public SwitchPoint {
+            requireNonNull(day);
+            requireNonNull(time);
+            requireNonNull(setpoint);
+        }
+
+        int minuteOfDay() {
+            return time.getHour() * 60 + time.getMinute();
+        }
+    }
+
+    private static final List<String> DAYS = List.of("Mo", "Tu", "We", "Th", "Fr", "Sa", "Su");
+    static final int UNLIMITED = 0;
+
+    private final List<SwitchPoint> switchPoints;
+    private final int maxSwitchPoints;
+    private final int maxSwitchPointsPerDay;
+    private final int timeRaster;
+
+    public KM200SwitchProgram(Collection<SwitchPoint> switchPoints) {
+        this(switchPoints, UNLIMITED, UNLIMITED, UNLIMITED);
+    }
+
+    private KM200SwitchProgram(Collection<SwitchPoint> switchPoints, int maxSwitchPoints, int maxSwitchPointsPerDay,
+            int timeRaster) {
+
+        var sorted = new ArrayList<>(switchPoints);
+        sorted.sort((a, b) -> a.day() != b.day() ? a.day().compareTo(b.day()) : a.time().compareTo(b.time()));
+        this.switchPoints = List.copyOf(sorted);
+        this.maxSwitchPoints = maxSwitchPoints;
+        this.maxSwitchPointsPerDay = maxSwitchPointsPerDay;
+        this.timeRaster = timeRaster;
+    }
+
+    public List<SwitchPoint> switchPoints() {
+        return switchPoints;
+    }
+
+    public List<SwitchPoint> switchPoints(DayOfWeek day) {
+        return switchPoints.stream().filter(it -> it.day() == day).toList();
+    }
+
+    /**
+     * @return A copy of this program with the switch points of the day
+     *         replaced
+     */
+    public KM200SwitchProgram withDay(DayOfWeek day, Collection<SwitchPoint> dayPoints) {
+        var points = new ArrayList<SwitchPoint>();
+        switchPoints.stream().filter(it -> it.day() != day).forEach(points::add);
+        for (var point : dayPoints) {
+            if (point.day() != day) {
+                throw new IllegalArgumentException(point + " is not on " + day);
+            }
+            points.add(point);
+        }
+        return new KM200SwitchProgram(points, maxSwitchPoints, maxSwitchPointsPerDay, timeRaster);
+    }
+
+    /**
+     * @return The maximum amount of switch points, or 0 if unknown
+     */
+    public int maxSwitchPoints() {
+        return maxSwitchPoints;
+    }
+
+    /**
+     * @return The maximum amount of switch points per day, or 0 if unknown
+     */
+    public int maxSwitchPointsPerDay() {
+        return maxSwitchPointsPerDay;
+    }
+
+    /**
+     * @return The raster in minutes of switch point times, or 0 if unknown
+     */
+    public int timeRaster() {
+        return timeRaster;
+    }
+
+    /**
+     * Verifies that this program fits into the limits of the KM200's program.
+     */
+    void assertFits(KM200SwitchProgram current) {
+        if (current.maxSwitchPoints != UNLIMITED && switchPoints.size() > current.maxSwitchPoints) {
+            throw new IllegalArgumentException(
+                    String.format("%d switch points exceed %d", switchPoints.size(), current.maxSwitchPoints));
+        }
+        for (var day : DayOfWeek.values()) {
+            var count = switchPoints(day).size();
+            if (current.maxSwitchPointsPerDay != UNLIMITED && count > current.maxSwitchPointsPerDay) {
+                throw new IllegalArgumentException(String.format("%d switch points on %s exceed %d", count, day,
+                        current.maxSwitchPointsPerDay));
+            }
+        }
+        for (var point : switchPoints) {
+            if (current.timeRaster != UNLIMITED && point.minuteOfDay() % current.timeRaster != 0) {
+                throw new IllegalArgumentException(
+                        String.format("%s is not in the raster of %d minutes", point, current.timeRaster));
+            }
+        }
+    }
+
+    static KM200SwitchProgram parse(String path, JsonNode json) throws KM200Exception {
+        var switchPoints = json.get("switchPoints");
+        if (switchPoints == null || !switchPoints.isArray()) {
+            throw new KM200Exception(path + " is not a switch program");
+        }
+        var points = new ArrayList<SwitchPoint>(switchPoints.size());
+        for (var point : switchPoints) {
+            var day = DAYS.indexOf(point.path("dayOfWeek").asText());
+            var minutes = point.path("time").asInt(-1);
+            if (day < 0 || minutes < 0 || minutes >= 24 * 60) {
+                throw new KM200Exception(path + " has an invalid switch point " + point);
+            }
+            var time = LocalTime.of(minutes / 60, minutes % 60);
+            points.add(new SwitchPoint(DayOfWeek.of(day + 1), time, point.path("setpoint").asText()));
+        }
+        return new KM200SwitchProgram(points, //
+                json.path("maxNbOfSwitchPoints").asInt(UNLIMITED), //
+                json.path("maxNbOfSwitchPointsPerDay").asInt(UNLIMITED), //
+                json.path("switchPointTimeRaster").asInt(UNLIMITED));
+    }
+
+    static record SwitchPointJson(String dayOfWeek, String setpoint, int time) {
+    }
+
+    List<SwitchPointJson> toJson() {
+        return switchPoints.stream() //
+                .map(it -> new SwitchPointJson(DAYS.get(it.day().ordinal()), it.setpoint(), it.minuteOfDay())) //
+                .toList();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof KM200SwitchProgram program && switchPoints.equals(program.switchPoints);
+    }
+
+    @Override
+    public int hashCode() {
+        return switchPoints.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return switchPoints.toString();
+    }
+}
@@ -0,0 +1,259 @@
+package de.malkusch.km200;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import de.malkusch.km200.http.Priority;
+
+/**
+ * Serves the last known value of a path instantly and revalidates it in the
+ * background (stale-while-revalidate).
+ *
+ * The values are persisted in an append-only file, so that they survive a
+ * restart. Note that this file contains the decrypted values of your heater.
+ *
+ * <pre>
+ * {@code
+ * try (var cache = new KM200ValueCache(km200, Path.of("km200.cache"))) {
+ *     var value = cache.query("/heatingCircuits/hc1/roomtemperature");
+ *     System.out.println(value.json() + " is " + value.age() + " old");
+ * }
+ * }
+ * </pre>
+ *
+ * Revalidation happens through {@link KM200}, i.e. it is serialized with all
+ * other requests, with {@link Priority#BACKGROUND}. This class is thread safe.
+ */
+public final class KM200ValueCache implements AutoCloseable {
+
+    private static final int COMPACTION_MIN_RECORDS = 1024;
+
+    private final KM200 km200;
+    private final Path file;
+    private final Map<String, Value> values = new ConcurrentHashMap<>();
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private final ExecutorService revalidation;
+    private FileChannel log;
+    private int records;
+
+    public static record Value(String path, String json, Instant timestamp) {
+
+        /**
+         * @return How long ago the KM200 responded with this value
+         */
+        public Duration age() {
+            return Duration.between(timestamp, Instant.now());
+        }
+    }
+
+    /**
+     * @param file
+     *            The file where values are persisted. It is created if it
+     *            doesn't exist.
+     */
+    public KM200ValueCache(KM200 km200, Path file) throws IOException {
+        this.km200 = requireNonNull(km200);
+        this.file = requireNonNull(file);
+        load();
+        compact();
+        this.revalidation = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().daemon().name("km200-revalidation").factory());
+    }
+
+    /**
+     * Returns the last known value and revalidates it in the background. If
+     * there's no known value, the KM200 is queried. After {@link #close()}
+     * known values are not revalidated anymore.
+     */
+    public Value query(String path) throws KM200Exception, IOException, InterruptedException {
+        var value = values.get(path);
+        if (value == null) {
+            return revalidate(path);
+        }
+
+        if (!revalidation.isShutdown() && revalidating.add(path)) {
+            revalidateInBackground(path);
+        }
+        return value;
+    }
+
+    private void revalidateInBackground(String path) {
+        try {
+            revalidation.execute(() -> {
+                try {
+                    Priority.BACKGROUND.call(() -> revalidate(path));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    // The stale value stays until the next revalidation
+                } finally {
+                    revalidating.remove(path);
+                }
+            });
+
+        } catch (RejectedExecutionException e) {
+            // Closed concurrently, the stale value stays
+            revalidating.remove(path);
+        }
+    }
+
+    /**
+     * @return The last known value without revalidating it, or null
+     */
+    public Value cached(String path) {
+        return values.get(path);
+    }
+
+    private Value revalidate(String path) throws KM200Exception, IOException, InterruptedException {
+        var json = km200.query(path);
+        return store(new Value(path, json, Instant.now()));
+    }
+
+    /**
+     * Stores the value unless a concurrent revalidation already stored a
+     * newer one. The value is only served once it was persisted.
+     * 
+     * @return The stored value
+     */
+    private synchronized Value store(Value value) throws IOException {
+        var current = values.get(value.path());
+        if (current != null && current.timestamp().isAfter(value.timestamp())) {
+            return current;
+        }
+        write(log, value);
+        values.put(value.path(), value);
+        records++;
+
+        if (records >= COMPACTION_MIN_RECORDS && records > 4 * values.size()) {
+            compact();
+        }
+        return value;
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        var size = Files.size(file);
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                var path = readBytes(input, size);
+                var timestamp = input.readLong();
+                var json = readBytes(input, size);
+
+                var value = new Value(new String(path, UTF_8), new String(json, UTF_8),
+                        Instant.ofEpochMilli(timestamp));
+                values.put(value.path(), value);
+                records++;
+            }
+        } catch (EOFException e) {
+            // A crash might have left a truncated record, the following
+            // compaction drops it.
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream input, long fileSize) throws IOException {
+        var length = input.readInt();
+        if (length < 0 || length > fileSize) {
+            throw new EOFException("Invalid record length " + length);
+        }
+        var bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    private static void write(FileChannel channel, Value value) throws IOException {
+        var path = value.path().getBytes(UTF_8);
+        var json = value.json().getBytes(UTF_8);
+        var record = ByteBuffer.allocate(recordSize(path, json));
+        record.putInt(path.length).put(path);
+        record.putLong(value.timestamp().toEpochMilli());
+        record.putInt(json.length).put(json);
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    /**
+     * Rewrites the file with only the latest value of each path.
+     * 
+     * The current log stays in use until the compacted file replaced it.
+     */
+    private synchronized void compact() throws IOException {
+        var compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try {
+            try (var channel = FileChannel.open(compacted, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                for (var value : values.values()) {
+                    write(channel, value);
+                }
+                channel.force(true);
+            }
+            Files.move(compacted, file, REPLACE_EXISTING, ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            Files.deleteIfExists(compacted);
+            if (log == null) {
+                throw e;
+            }
+            // Keep appending to the uncompacted log
+            return;
+        }
+
+        var previous = log;
+        log = FileChannel.open(file, CREATE, WRITE, APPEND);
+        records = values.size();
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    private static int recordSize(byte[] path, byte[] json) {
+        return Integer.BYTES + path.length + Long.BYTES + Integer.BYTES + json.length;
+    }
+
+    /**
+     * Waits up to a minute for a running revalidation. A revalidation which
+     * didn't finish by then is interrupted and its value is not stored.
+     */
+    @Override
+    public void close() throws IOException {
+        revalidation.shutdown();
+        try {
+            if (!revalidation.awaitTermination(1, TimeUnit.MINUTES)) {
+                revalidation.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            revalidation.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            // A late store fails on the closed log without serving its value
+            log.close();
+        }
+    }
+}
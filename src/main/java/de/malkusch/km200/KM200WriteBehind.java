@@ -0,0 +1,196 @@
+package de.malkusch.km200;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces updates of a path within a time window.
+ *
+ * Instead of sending every update to the KM200, updates of the same path are
+ * collected for the duration of the window and only the last one is sent.
+ * This is useful for rapidly changing user input e.g. a slider for a
+ * setpoint.
+ *
+ * <pre>
+ * {@code
+ * try (var writeBehind = new KM200WriteBehind(km200, Duration.ofMillis(500))) {
+ *     writeBehind.update("/heatingCircuits/hc1/temporaryRoomSetpoint", new BigDecimal("21.5"));
+ *     writeBehind.update("/heatingCircuits/hc1/temporaryRoomSetpoint", new BigDecimal("22"));
+ * }
+ * }
+ * </pre>
+ *
+ * The returned futures complete when their value, or a newer value which
+ * replaced it, was written. After {@link #close()} updates and flushes fail
+ * with an {@link IllegalStateException}. Updates are written by a single thread through
+ * {@link KM200}, i.e. they are serialized with all other requests. This class
+ * is thread safe.
+ */
+public final class KM200WriteBehind implements AutoCloseable {
+
+    private final KM200 km200;
+    private final Duration window;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<String, Pending> pending = new HashMap<>();
+
+    @FunctionalInterface
+    private static interface Write {
+        void write(KM200 km200, String path) throws KM200Exception, IOException, InterruptedException;
+    }
+
+    private static final class Pending {
+        private Write write;
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    }
+
+    /**
+     * @param window
+     *            How long updates of a path are collected before the last one
+     *            is sent.
+     */
+    public KM200WriteBehind(KM200 km200, Duration window) {
+        this.km200 = requireNonNull(km200);
+        this.window = requireNonNull(window);
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        this.scheduler = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().daemon().name("km200-write-behind").factory());
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public CompletableFuture<Void> update(String path, BigDecimal value) {
+        requireNonNull(value);
+        return enqueue(path, (km200, p) -> km200.update(p, value));
+    }
+
+    public CompletableFuture<Void> update(String path, int value) {
+        return update(path, new BigDecimal(value));
+    }
+
+    public CompletableFuture<Void> update(String path, String value) {
+        requireNonNull(value);
+        return enqueue(path, (km200, p) -> km200.update(p, value));
+    }
+
+    private CompletableFuture<Void> enqueue(String path, Write write) {
+        requireNonNull(path);
+        var future = new CompletableFuture<Void>();
+        synchronized (pending) {
+            if (scheduler.isShutdown()) {
+                throw new IllegalStateException("Write behind is closed");
+            }
+            var update = pending.get(path);
+            if (update == null) {
+                var scheduled = new Pending();
+                pending.put(path, scheduled);
+                scheduler.schedule(() -> flush(path, scheduled), window.toNanos(), TimeUnit.NANOSECONDS);
+                update = scheduled;
+            }
+            update.write = write;
+            update.futures.add(future);
+        }
+        return future;
+    }
+
+    /**
+     * Writes the update, unless it was already written. A flush which was
+     * scheduled for an older update of the path must not write a newer one
+     * before its window ended.
+     */
+    private void flush(String path, Pending update) {
+        synchronized (pending) {
+            if (!pending.remove(path, update)) {
+                return;
+            }
+        }
+
+        try {
+            update.write.write(km200, path);
+            update.futures.forEach(it -> it.complete(null));
+
+        } catch (InterruptedException e) {
+            update.futures.forEach(it -> it.completeExceptionally(e));
+            Thread.currentThread().interrupt();
+
+        } catch (Exception e) {
+            update.futures.forEach(it -> it.completeExceptionally(e));
+        }
+    }
+
+    private void flushAll() {
+        Map<String, Pending> updates;
+        synchronized (pending) {
+            updates = Map.copyOf(pending);
+        }
+        updates.forEach(this::flush);
+    }
+
+    /**
+     * Sends all pending updates and waits until they were written.
+     */
+    public void flush() throws InterruptedException {
+        Future<?> flushed;
+        synchronized (pending) {
+            if (scheduler.isShutdown()) {
+                throw new IllegalStateException("Write behind is closed");
+            }
+            flushed = scheduler.submit(this::flushAll);
+        }
+        try {
+            flushed.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Flushing failed", e);
+        }
+    }
+
+    /**
+     * Sends all pending updates and stops accepting new ones.
+     * 
+     * Updates which were not written within a minute, or before the closing
+     * thread was interrupted, are aborted and their futures fail.
+     */
+    @Override
+    public void close() {
+        synchronized (pending) {
+            if (scheduler.isShutdown()) {
+                return;
+            }
+            scheduler.submit(this::flushAll);
+            scheduler.shutdown();
+        }
+        try {
+            if (scheduler.awaitTermination(1, TimeUnit.MINUTES)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler.shutdownNow();
+        abortPending();
+    }
+
+    private void abortPending() {
+        Map<String, Pending> aborted;
+        synchronized (pending) {
+            aborted = Map.copyOf(pending);
+            pending.clear();
+        }
+        aborted.forEach((path, update) -> {
+            var e = new KM200Exception("Write behind was closed before writing " + path);
+            update.futures.forEach(it -> it.completeExceptionally(e));
+        });
+    }
+}
@@ -0,0 +1,111 @@
+package de.malkusch.km200;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Remembers the last encrypted response of each path together with its
+ * decoded form.
+ *
+ * The KM200 encrypts with AES/ECB without an IV, i.e. an unchanged value
+ * results in a byte identical response. Such a response can be served from
+ * this memo without Base64 decoding, decrypting or parsing it again.
+ *
+ * A response which was requested before an update of its path might be
+ * decrypted after {@link #forget(String)}. Such a response must not be
+ * remembered, so callers pass the {@link #version()} from before the request.
+ */
+final class ResponseMemo {
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong updates = new AtomicLong();
+
+    static final class Entry {
+        private final String path;
+        private final byte[] encrypted;
+        private final String decrypted;
+        private volatile JsonNode json;
+        private volatile long confirmed;
+
+        private Entry(String path, byte[] encrypted, String decrypted) {
+            this.path = path;
+            this.encrypted = encrypted;
+            this.decrypted = decrypted;
+            this.confirmed = System.nanoTime();
+        }
+
+        String decrypted() {
+            return decrypted;
+        }
+
+        /**
+         * The parsed JSON is shared between callers and must not be modified.
+         */
+        JsonNode json(ObjectMapper mapper) throws KM200Exception {
+            var json = this.json;
+            if (json == null) {
+                try {
+                    json = mapper.readTree(decrypted);
+                } catch (JacksonException e) {
+                    throw new KM200Exception("Could not parse JSON from query " + path, e);
+                }
+                this.json = json;
+            }
+            return json;
+        }
+    }
+
+    long version() {
+        return updates.get();
+    }
+
+    Entry lookup(String path, byte[] encrypted, long version) {
+        var entry = entries.get(path);
+        if (entry != null && Arrays.equals(entry.encrypted, encrypted)) {
+            if (updates.get() == version) {
+                entry.confirmed = System.nanoTime();
+            }
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * @return The entry if the KM200 responded with it within maxAge, or null
+     */
+    Entry recent(String path, Duration maxAge) {
+        var entry = entries.get(path);
+        if (entry != null && System.nanoTime() - entry.confirmed <= maxAge.toNanos()) {
+            return entry;
+        }
+        return null;
+    }
+
+    void forget(String path) {
+        updates.incrementAndGet();
+        entries.remove(path);
+    }
+
+    /**
+     * @return An entry which is not remembered
+     */
+    static Entry entry(String path, byte[] encrypted, String decrypted) {
+        return new Entry(path, encrypted, decrypted);
+    }
+
+    Entry remember(String path, byte[] encrypted, String decrypted, long version) {
+        var entry = new Entry(path, encrypted, decrypted);
+        entries.put(path, entry);
+        if (updates.get() != version) {
+            // An update might have happened after this response
+            entries.remove(path, entry);
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,121 @@
+package de.malkusch.km200;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * Encodes updates for the KM200 into buffers which are reused per thread.
+ *
+ * The JSON is written into a block aligned buffer, zero padded and encrypted
+ * in place, and Base64 encoded into a second buffer. The encoded update is
+ * only valid until the next update of the same thread.
+ */
+final class UpdateEncoder {
+
+    private static final int BLOCK_SIZE = 16;
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+            .getBytes(US_ASCII);
+    private static final ThreadLocal<UpdateEncoder> ENCODERS = ThreadLocal.withInitial(UpdateEncoder::new);
+
+    private final Buffer plain = new Buffer();
+    private byte[] encoded = new byte[0];
+    private Cipher cipher;
+    private byte[] key;
+
+    private static final class Buffer extends OutputStream {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        private void ensure(int capacity) {
+            if (bytes.length < capacity) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            ensure(size + 1);
+            bytes[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensure(size + len);
+            System.arraycopy(b, off, bytes, size, len);
+            size += len;
+        }
+    }
+
+    static UpdateEncoder get() {
+        return ENCODERS.get();
+    }
+
+    /**
+     * @return The length of the encoded update in {@link #encoded()}
+     */
+    int encode(ObjectMapper mapper, KM200Device device, Object update) throws GeneralSecurityException {
+        plain.size = 0;
+        mapper.writeValue(plain, update);
+
+        // The KM200 expects at least one zero byte, i.e. a full block of zeros for aligned JSON.
+        var length = plain.size;
+        var padded = (length / BLOCK_SIZE + 1) * BLOCK_SIZE;
+        plain.ensure(padded);
+        Arrays.fill(plain.bytes, length, padded, (byte) 0);
+
+        cipher(device).doFinal(plain.bytes, 0, padded, plain.bytes, 0);
+
+        var encodedLength = 4 * ((padded + 2) / 3);
+        if (encoded.length < encodedLength) {
+            encoded = new byte[encodedLength];
+        }
+        base64(plain.bytes, padded, encoded);
+        return encodedLength;
+    }
+
+    /**
+     * @return The buffer with the last encoded update
+     */
+    byte[] encoded() {
+        return encoded;
+    }
+
+    private Cipher cipher(KM200Device device) throws GeneralSecurityException {
+        if (cipher == null) {
+            cipher = Cipher.getInstance("AES/ECB/NoPadding");
+        }
+        if (key != device.getCryptKeyPriv()) {
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(device.getCryptKeyPriv(), "AES"));
+            key = device.getCryptKeyPriv();
+        }
+        return cipher;
+    }
+
+    private static void base64(byte[] source, int length, byte[] target) {
+        var t = 0;
+        var s = 0;
+        for (; s + 2 < length; s += 3) {
+            var bits = (source[s] & 0xff) << 16 | (source[s + 1] & 0xff) << 8 | (source[s + 2] & 0xff);
+            target[t++] = BASE64[bits >>> 18 & 0x3f];
+            target[t++] = BASE64[bits >>> 12 & 0x3f];
+            target[t++] = BASE64[bits >>> 6 & 0x3f];
+            target[t++] = BASE64[bits & 0x3f];
+        }
+        var rest = length - s;
+        if (rest > 0) {
+            var bits = (source[s] & 0xff) << 16 | (rest == 2 ? (source[s + 1] & 0xff) << 8 : 0);
+            target[t++] = BASE64[bits >>> 18 & 0x3f];
+            target[t++] = BASE64[bits >>> 12 & 0x3f];
+            target[t++] = rest == 2 ? BASE64[bits >>> 6 & 0x3f] : (byte) '=';
+            target[t] = '=';
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package de.malkusch.km200.dump;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.malkusch.km200.KM200;
+import de.malkusch.km200.KM200Endpoint;
+import de.malkusch.km200.http.MetricsHttp;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+/**
+ * Dumps the endpoint trees of KM200 gateways as NDJSON.
+ *
+ * Each gateway is traversed in its own thread, i.e. gateways are dumped in
+ * parallel while the requests to one gateway stay serialized. Each endpoint is
+ * written as one line as soon as it was discovered:
+ *
+ * <pre>
+ * {"gateway":"home","path":"/system/brand","type":"stringValue","value":"Buderus","writeable":false,"recordable":false,"json":{…},"requests":1,"gatewayMillis":12.5,"elapsedMillis":13.1}
+ * </pre>
+ *
+ * requests and gatewayMillis are the requests and their duration which the
+ * discovery of that endpoint needed, including its parent nodes.
+ * elapsedMillis is the wall time since the previous endpoint of that gateway.
+ * A gateway whose traversal failed ends with a line with an "error".
+ */
+public final class KM200Dump {
+
+    public static record Gateway(String name, KM200.Builder builder) {
+    }
+
+    private final Writer out;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * @param out
+     *            Lines are flushed as they are written.
+     */
+    public KM200Dump(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Dumps all gateways and returns when all of them are done.
+     *
+     * @return The amount of gateways which failed
+     */
+    public int dump(List<Gateway> gateways) throws InterruptedException {
+        var failures = 0;
+        try (var executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("km200-dump-", 0).factory())) {
+            var dumps = new ArrayList<Future<Boolean>>();
+            for (var gateway : gateways) {
+                dumps.add(executor.submit(() -> dump(gateway)));
+            }
+            for (var dump : dumps) {
+                try {
+                    if (!dump.get()) {
+                        failures++;
+                    }
+                } catch (ExecutionException e) {
+                    failures++;
+                }
+            }
+        }
+        return failures;
+    }
+
+    private boolean dump(Gateway gateway) throws IOException, InterruptedException {
+        var stats = new MetricsHttp.Stats();
+        var builder = gateway.builder.copy().decorateTransport(http -> new MetricsHttp(http, stats));
+
+        try (var km200 = builder.build()) {
+            var previous = new long[] { 0, 0, System.nanoTime() };
+
+            km200.endpoints().forEach(endpoint -> {
+                var now = System.nanoTime();
+                var requests = stats.requests();
+                var nanos = stats.duration().toNanos();
+
+                var line = line(gateway, endpoint);
+                line.put("requests", requests - previous[0]);
+                line.put("gatewayMillis", (nanos - previous[1]) / 1e6);
+                line.put("elapsedMillis", (now - previous[2]) / 1e6);
+                write(line);
+
+                previous[0] = requests;
+                previous[1] = nanos;
+                previous[2] = System.nanoTime();
+            });
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            return true;
+
+        } catch (InterruptedException e) {
+            throw e;
+
+        } catch (Exception e) {
+            var line = mapper.createObjectNode();
+            line.put("gateway", gateway.name);
+            line.put("error", e.getMessage() != null ? e.getMessage() : e.toString());
+            write(line);
+            return false;
+        }
+    }
+
+    private ObjectNode line(Gateway gateway, KM200Endpoint endpoint) {
+        var line = mapper.createObjectNode();
+        line.put("gateway", gateway.name);
+        line.put("path", endpoint.path());
+        line.put("type", endpoint.type());
+        switch (endpoint) {
+        case KM200Endpoint.Value value -> {
+            line.put("value", value.value());
+            if (value.allowedValues() != null) {
+                putJson(line, "allowedValues", value.allowedValues());
+            }
+            line.put("writeable", value.writeable());
+            line.put("recordable", value.recordable());
+            putJson(line, "json", value.body());
+        }
+        case KM200Endpoint.UnknownNode unknown -> putJson(line, "json", unknown.value());
+        case KM200Endpoint.ForbiddenNode forbidden -> {
+        }
+        }
+        return line;
+    }
+
+    private void putJson(ObjectNode line, String name, String json) {
+        try {
+            line.set(name, mapper.readTree(json));
+        } catch (JacksonException e) {
+            line.put(name, json);
+        }
+    }
+
+    private void write(ObjectNode line) {
+        var json = mapper.writeValueAsString(line);
+        synchronized (out) {
+            try {
+                out.write(json);
+                out.write('\n');
+                out.flush();
+
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Dumps the gateways to stdout or a file.
+     *
+     * Each gateway is configured by a properties file with the keys uri,
+     * gatewayPassword, privatePassword, salt and optionally name. Without
+     * files the KM200 is configured by the environment variables KM200_URI,
+     * KM200_GATEWAY_PASSWORD, KM200_PRIVATE_PASSWORD and KM200_SALT.
+     *
+     * @param args
+     *            {@code [-o dump.ndjson] [gateway.properties…]}
+     */
+    public static void main(String[] args) throws Exception {
+        Path file = null;
+        var gateways = new ArrayList<Gateway>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length) {
+                file = Path.of(args[++i]);
+                continue;
+            }
+            var properties = new Properties();
+            try (var reader = Files.newBufferedReader(Path.of(args[i]), UTF_8)) {
+                properties.load(reader);
+            }
+            var uri = properties.getProperty("uri");
+            gateways.add(new Gateway(properties.getProperty("name", uri), KM200.builder() //
+                    .uri(uri) //
+                    .gatewayPassword(properties.getProperty("gatewayPassword")) //
+                    .privatePassword(properties.getProperty("privatePassword")) //
+                    .salt(properties.getProperty("salt"))));
+        }
+        if (gateways.isEmpty()) {
+            var uri = System.getenv("KM200_URI");
+            gateways.add(new Gateway(uri, KM200.builder() //
+                    .uri(uri) //
+                    .gatewayPassword(System.getenv("KM200_GATEWAY_PASSWORD")) //
+                    .privatePassword(System.getenv("KM200_PRIVATE_PASSWORD")) //
+                    .salt(System.getenv("KM200_SALT"))));
+        }
+
+        int failures;
+        var stream = file != null ? Files.newOutputStream(file) : System.out;
+        try (var out = new BufferedWriter(new OutputStreamWriter(stream, UTF_8))) {
+            failures = new KM200Dump(out).dump(gateways);
+        }
+        if (failures > 0) {
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package de.malkusch.km200.exporter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.malkusch.km200.KM200;
+import de.malkusch.km200.KM200Endpoint;
+import de.malkusch.km200.http.Priority;
+
+/**
+ * Exports numeric values of the KM200 in the Prometheus text format.
+ *
+ * The values are polled in the background with {@link Priority#BACKGROUND},
+ * each value with its own request, so that interactive requests can run
+ * between them. A scrape of /metrics is answered instantly with the result of
+ * the last poll, i.e. the scrape doesn't wait for the KM200. Each value has
+ * the timestamp when it was read, a value which couldn't be read again keeps
+ * its old timestamp. km200_up is 1 if the last poll read at least one value:
+ *
+ * <pre>
+ * km200_value{path="/heatingCircuits/hc1/roomtemperature"} 21.5 1700000000000
+ * km200_value_timestamp_seconds{path="/heatingCircuits/hc1/roomtemperature"} 1700000000.000
+ * </pre>
+ */
+public final class KM200Exporter implements AutoCloseable {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final KM200 km200;
+    private final ScheduledExecutorService poller;
+    private final HttpServer server;
+    private volatile byte[] metrics = new byte[0];
+
+    // Only accessed by the poller
+    private List<String> paths;
+    private double[] values;
+    private long[] timestamps;
+    private long[] failures;
+    private boolean up;
+    private long pollMillis;
+    private long pollNanos;
+
+    /**
+     * Starts polling and serving.
+     *
+     * @param paths
+     *            The paths of numeric values, or an empty list to export all
+     *            endpoints of the type floatValue.
+     * @param interval
+     *            The pause between two polls
+     * @param port
+     *            The port of the /metrics endpoint, or 0 for any free port
+     */
+    public KM200Exporter(KM200 km200, List<String> paths, Duration interval, int port) throws IOException {
+        this.km200 = km200;
+        if (!paths.isEmpty()) {
+            init(List.copyOf(paths));
+        }
+        render();
+
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", this::scrape);
+        server.start();
+
+        this.poller = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("km200-exporter").factory());
+        poller.scheduleWithFixedDelay(this::poll, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    private void init(List<String> paths) {
+        this.paths = paths;
+        values = new double[paths.size()];
+        Arrays.fill(values, Double.NaN);
+        timestamps = new long[paths.size()];
+        failures = new long[paths.size()];
+    }
+
+    private void scrape(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            var metrics = this.metrics;
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, metrics.length);
+            exchange.getResponseBody().write(metrics);
+        }
+    }
+
+    void poll() {
+        var start = System.nanoTime();
+        try {
+            if (paths == null) {
+                init(Priority.BACKGROUND.call(() -> km200.endpoints() //
+                        .filter(it -> "floatValue".equals(it.type())) //
+                        .map(KM200Endpoint::path) //
+                        .toList()));
+            }
+
+            var read = paths.isEmpty();
+            for (int i = 0; i < paths.size(); i++) {
+                var path = paths.get(i);
+                try {
+                    values[i] = Priority.BACKGROUND.call(() -> km200.queryDouble(path));
+                    timestamps[i] = System.currentTimeMillis();
+                    read = true;
+
+                } catch (IOException | RuntimeException e) {
+                    failures[i]++;
+                }
+            }
+            up = read;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+
+        } catch (Exception e) {
+            up = false;
+        }
+        pollNanos = System.nanoTime() - start;
+        pollMillis = System.currentTimeMillis();
+        render();
+    }
+
+    private void render() {
+        var text = new StringBuilder();
+        text.append("# HELP km200_up Whether the last poll of the KM200 succeeded.\n");
+        text.append("# TYPE km200_up gauge\n");
+        text.append("km200_up ").append(up ? 1 : 0).append('\n');
+
+        text.append("# HELP km200_poll_duration_seconds The duration of the last poll.\n");
+        text.append("# TYPE km200_poll_duration_seconds gauge\n");
+        text.append("km200_poll_duration_seconds ").append(pollNanos / 1e9).append('\n');
+
+        text.append("# HELP km200_poll_timestamp_seconds When the last poll ended.\n");
+        text.append("# TYPE km200_poll_timestamp_seconds gauge\n");
+        text.append("km200_poll_timestamp_seconds ").append(seconds(pollMillis)).append('\n');
+
+        var metrics = km200.metrics();
+        text.append("# HELP km200_queue_depth The amount of requests waiting for the KM200.\n");
+        text.append("# TYPE km200_queue_depth gauge\n");
+        text.append("km200_queue_depth ").append(metrics.queueDepth()).append('\n');
+
+        if (paths != null) {
+            text.append("# HELP km200_value A numeric value of the KM200.\n");
+            text.append("# TYPE km200_value gauge\n");
+            for (int i = 0; i < paths.size(); i++) {
+                if (timestamps[i] != 0) {
+                    label(text, "km200_value", paths.get(i)).append(values[i]).append(' ').append(timestamps[i])
+                            .append('\n');
+                }
+            }
+
+            text.append("# HELP km200_value_timestamp_seconds When the value was read successfully.\n");
+            text.append("# TYPE km200_value_timestamp_seconds gauge\n");
+            for (int i = 0; i < paths.size(); i++) {
+                if (timestamps[i] != 0) {
+                    label(text, "km200_value_timestamp_seconds", paths.get(i)).append(seconds(timestamps[i]))
+                            .append('\n');
+                }
+            }
+
+            text.append("# HELP km200_value_failures_total The amount of failed reads of the value.\n");
+            text.append("# TYPE km200_value_failures_total counter\n");
+            for (int i = 0; i < paths.size(); i++) {
+                label(text, "km200_value_failures_total", paths.get(i)).append(failures[i]).append('\n');
+            }
+        }
+
+        this.metrics = text.toString().getBytes(UTF_8);
+    }
+
+    private static StringBuilder label(StringBuilder text, String name, String path) {
+        text.append(name).append("{path=\"");
+        for (int i = 0; i < path.length(); i++) {
+            var c = path.charAt(i);
+            switch (c) {
+            case '\\' -> text.append("\\\\");
+            case '"' -> text.append("\\\"");
+            case '\n' -> text.append("\\n");
+            default -> text.append(c);
+            }
+        }
+        return text.append("\"} ");
+    }
+
+    private static String seconds(long millis) {
+        return String.format(Locale.ROOT, "%d.%03d", millis / 1000, millis % 1000);
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+        try {
+            poller.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Runs the exporter until the JVM is terminated. The KM200 is configured
+     * by the environment variables KM200_URI, KM200_GATEWAY_PASSWORD,
+     * KM200_PRIVATE_PASSWORD and KM200_SALT.
+     *
+     * @param args
+     *            The port, the poll interval in seconds and optionally the
+     *            paths e.g. {@code 9200 60 /heatingCircuits/hc1/roomtemperature}
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: KM200Exporter <port> <interval seconds> [path…]");
+            System.exit(1);
+        }
+        var port = Integer.parseInt(args[0]);
+        var interval = Duration.ofSeconds(Long.parseLong(args[1]));
+        var paths = List.of(args).subList(2, args.length);
+
+        var km200 = KM200.builder() //
+                .uri(System.getenv("KM200_URI")) //
+                .gatewayPassword(System.getenv("KM200_GATEWAY_PASSWORD")) //
+                .privatePassword(System.getenv("KM200_PRIVATE_PASSWORD")) //
+                .salt(System.getenv("KM200_SALT")) //
+                .build();
+
+        var exporter = new KM200Exporter(km200, paths, interval, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(exporter::close));
+        System.out.println("KM200 exporter listens on " + exporter.address());
+    }
+}
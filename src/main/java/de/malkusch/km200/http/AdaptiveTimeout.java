@@ -0,0 +1,127 @@
+package de.malkusch.km200.http;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A read timeout per path prefix, derived from the latencies of previous
+ * requests.
+ *
+ * The timeout is a multiple of the p99 latency of the recent requests with
+ * the same prefix (e.g. "/recordings/heatSources" for a depth of 2), bounded
+ * by min and max. A prefix with too few samples gets the max timeout. A timed
+ * out request counts as a sample of its timeout, so that a prefix which
+ * became slower grows its timeout towards max. This class is thread safe.
+ *
+ * <pre>
+ * {@code
+ * var km200 = KM200.builder()
+ *         ...
+ *         .timeout(Duration.ofSeconds(2))
+ *         .adaptiveTimeout(new AdaptiveTimeout(Duration.ofSeconds(1), Duration.ofSeconds(30)))
+ *         .build();
+ * }
+ * </pre>
+ */
+public final class AdaptiveTimeout {
+
+    private static final int WINDOW = 100;
+    private static final int MIN_SAMPLES = 10;
+
+    private final long minNanos;
+    private final long maxNanos;
+    private final double multiplier;
+    private final int depth;
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    private final class Window {
+        private final long[] samples = new long[WINDOW];
+        private int count;
+        private long timeout;
+
+        private synchronized void add(long nanos) {
+            samples[count++ % WINDOW] = nanos;
+            var size = Math.min(count, WINDOW);
+            if (size < MIN_SAMPLES) {
+                return;
+            }
+            var sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            var p99 = sorted[(int) Math.ceil(size * 0.99) - 1];
+            timeout = Math.clamp((long) (p99 * multiplier), minNanos, maxNanos);
+        }
+
+        private synchronized long timeout(long max) {
+            return timeout != 0 ? timeout : max;
+        }
+    }
+
+    /**
+     * Three times the p99 latency of the first two path segments.
+     */
+    public AdaptiveTimeout(Duration min, Duration max) {
+        this(min, max, 3, 2);
+    }
+
+    /**
+     * @param multiplier
+     *            The timeout is this multiple of the p99 latency
+     * @param depth
+     *            The amount of path segments which form a prefix
+     */
+    public AdaptiveTimeout(Duration min, Duration max, double multiplier, int depth) {
+        if (min.toMillis() < 1 || max.compareTo(min) < 0) {
+            throw new IllegalArgumentException("min must be at least 1ms and not greater than max");
+        }
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier must not be smaller than 1");
+        }
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be positive");
+        }
+        this.minNanos = min.toNanos();
+        this.maxNanos = max.toNanos();
+        this.multiplier = multiplier;
+        this.depth = depth;
+    }
+
+    public Duration timeout(String path) {
+        var window = windows.get(prefix(path));
+        return Duration.ofNanos(window != null ? window.timeout(maxNanos) : maxNanos);
+    }
+
+    void record(String path, Duration latency) {
+        windows.computeIfAbsent(prefix(path), it -> new Window()).add(latency.toNanos());
+    }
+
+    /**
+     * @return The current timeouts of all prefixes which have enough samples
+     */
+    public Map<String, Duration> timeouts() {
+        var timeouts = new TreeMap<String, Duration>();
+        windows.forEach((prefix, window) -> {
+            var timeout = window.timeout(0);
+            if (timeout != 0) {
+                timeouts.put(prefix, Duration.ofNanos(timeout));
+            }
+        });
+        return timeouts;
+    }
+
+    String prefix(String path) {
+        var end = path.indexOf('?');
+        if (end == -1) {
+            end = path.length();
+        }
+        var segments = 0;
+        for (int i = 1; i < end; i++) {
+            if (path.charAt(i) == '/' && ++segments == depth) {
+                return path.substring(0, i);
+            }
+        }
+        return path.substring(0, end);
+    }
+}
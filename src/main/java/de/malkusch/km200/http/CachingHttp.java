@@ -0,0 +1,74 @@
+package de.malkusch.km200.http;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.malkusch.km200.KM200Exception;
+import de.malkusch.km200.http.Http.Request.Get;
+import de.malkusch.km200.http.Http.Request.Post;
+
+/**
+ * Answers repeated GET requests within a TTL without asking the KM200.
+ *
+ * A POST to a path invalidates its cached response. Only successful responses
+ * are cached.
+ */
+public final class CachingHttp extends Http {
+
+    private final Http http;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+    private final AtomicLong updates = new AtomicLong();
+
+    private static record Entry(Response response, long expires) {
+    }
+
+    public CachingHttp(Http http, Duration ttl) {
+        if (ttl.isNegative()) {
+            throw new IllegalArgumentException("ttl must not be negative");
+        }
+        this.http = http;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    @Override
+    public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
+        return switch (request) {
+        case Get get -> get(get);
+        case Post post -> {
+            try {
+                yield http.exchange(post);
+            } finally {
+                updates.incrementAndGet();
+                cache.remove(post.path());
+            }
+        }
+        };
+    }
+
+    private Response get(Get get) throws IOException, InterruptedException, KM200Exception {
+        var entry = cache.get(get.path());
+        if (entry != null && System.nanoTime() - entry.expires < 0) {
+            return entry.response;
+        }
+
+        var version = updates.get();
+        var response = http.exchange(get);
+        if (response.status() >= 200 && response.status() <= 299) {
+            var cached = new Entry(response, System.nanoTime() + ttlNanos);
+            cache.put(get.path(), cached);
+            if (updates.get() != version) {
+                // An update might have happened after this response
+                cache.remove(get.path(), cached);
+            }
+        }
+        return response;
+    }
+
+    public void invalidate() {
+        updates.incrementAndGet();
+        cache.clear();
+    }
+}
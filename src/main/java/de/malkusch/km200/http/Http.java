@@ -1,16 +1,33 @@
 package de.malkusch.km200.http;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 
 import de.malkusch.km200.KM200Exception;
 
+/**
+ * A request/response channel to the KM200.
+ *
+ * Implementations are either a transport (e.g. {@link UrlHttp}) or decorate
+ * another instance.
+ */
 public abstract class Http {
 
-    sealed interface Request {
+    public sealed interface Request {
 
         String path();
 
-        static record Get(String path) implements Request {
+        /**
+         * @param lenient
+         *            Respond with 403, 404 and 423 instead of throwing
+         */
+        static record Get(String path, boolean lenient) implements Request {
+
+            public Get(String path) {
+                this(path, false);
+            }
 
             @Override
             public String toString() {
@@ -18,7 +35,37 @@ public abstract class Http {
             }
         }
 
-        static record Post(String path, byte[] body) implements Request {
+        /**
+         * @param body
+         *            A read-only view of the body. It might be backed by a
+         *            reused buffer, i.e. it is only valid during the exchange.
+         */
+        static record Post(String path, ByteBuffer body) implements Request {
+
+            public Post {
+                body = body.slice().asReadOnlyBuffer();
+            }
+
+            public Post(String path, byte[] body) {
+                this(path, ByteBuffer.wrap(body));
+            }
+
+            /**
+             * @return A view with its own position, so reading it doesn't
+             *         consume the body.
+             */
+            @Override
+            public ByteBuffer body() {
+                return body.duplicate();
+            }
+
+            public int length() {
+                return body.remaining();
+            }
+
+            public void writeTo(OutputStream output) throws IOException {
+                Channels.newChannel(output).write(body());
+            }
 
             @Override
             public String toString() {
@@ -29,16 +76,22 @@ public abstract class Http {
 
     public static record Response(int status, byte[] body) {
 
-        static Response successfullResponse(Request request, int status, byte[] body) throws KM200Exception {
+        /**
+         * Maps a response status to a response or the respective
+         * {@link KM200Exception}. Transports should use this method.
+         */
+        public static Response successfullResponse(Request request, int status, byte[] body) throws KM200Exception {
             return switch ((Integer) status) {
             case Integer s when (s >= 200 && s <= 299) -> new Response(status, body);
-
-            case 400 -> throw new KM200Exception.BadRequest(request + " was a bad request");
-            case 403 -> throw new KM200Exception.Forbidden(request + " is forbidden");
-            case 404 -> throw new KM200Exception.NotFound(request + " was not found");
-            case 423 -> throw new KM200Exception.Locked(request + " was locked");
-            case 500 -> throw new KM200Exception.ServerError(request + " resulted in a server error");
-            default -> throw new KM200Exception(request + " failed with response code " + status);
+            case Integer s when (s == 403 || s == 404 || s == 423) && request instanceof Request.Get get
+                    && get.lenient() -> new Response(status, body);
+
+            case 400 -> throw new KM200Exception.BadRequest(request + " was a bad request", body);
+            case 403 -> throw new KM200Exception.Forbidden(request + " is forbidden", body);
+            case 404 -> throw new KM200Exception.NotFound(request + " was not found", body);
+            case 423 -> throw new KM200Exception.Locked(request + " was locked", body);
+            case 500 -> throw new KM200Exception.ServerError(request + " resulted in a server error", body);
+            default -> throw new KM200Exception(request + " failed with response code " + status, body);
             };
         }
 
@@ -48,9 +101,25 @@ public abstract class Http {
         return exchange(new Request.Get(path));
     }
 
+    /**
+     * Like {@link #get(String)}, but responds with the expected failures 403,
+     * 404 and 423 instead of throwing.
+     */
+    public final Response tryGet(String path) throws KM200Exception, IOException, InterruptedException {
+        return exchange(new Request.Get(path, true));
+    }
+
     public final Response post(String path, byte[] body) throws KM200Exception, IOException, InterruptedException {
         return exchange(new Request.Post(path, body));
     }
 
-    protected abstract Response exchange(Request request) throws IOException, InterruptedException, KM200Exception;
+    /**
+     * Posts the first length bytes of the body.
+     */
+    public final Response post(String path, byte[] body, int length)
+            throws KM200Exception, IOException, InterruptedException {
+        return exchange(new Request.Post(path, ByteBuffer.wrap(body, 0, length)));
+    }
+
+    public abstract Response exchange(Request request) throws IOException, InterruptedException, KM200Exception;
 }
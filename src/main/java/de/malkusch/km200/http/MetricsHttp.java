@@ -0,0 +1,79 @@
+package de.malkusch.km200.http;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.malkusch.km200.KM200Exception;
+
+/**
+ * Counts the requests which pass this decorator.
+ *
+ * <pre>
+ * {@code
+ * var stats = new MetricsHttp.Stats();
+ * var km200 = KM200.builder()
+ *         ...
+ *         .decorateTransport(http -> new MetricsHttp(http, stats))
+ *         .build();
+ * }
+ * </pre>
+ */
+public final class MetricsHttp extends Http {
+
+    private final Http http;
+    private final Stats stats;
+
+    /**
+     * The counters of a {@link MetricsHttp}. This class is thread safe.
+     */
+    public static final class Stats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        public long requests() {
+            return requests.sum();
+        }
+
+        /**
+         * @return The amount of requests which did throw an exception
+         */
+        public long failures() {
+            return failures.sum();
+        }
+
+        /**
+         * @return The summed up duration of all requests
+         */
+        public Duration duration() {
+            return Duration.ofNanos(nanos.sum());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d, failures=%d, duration=%s", requests(), failures(), duration());
+        }
+    }
+
+    public MetricsHttp(Http http, Stats stats) {
+        this.http = http;
+        this.stats = stats;
+    }
+
+    @Override
+    public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
+        var start = System.nanoTime();
+        try {
+            return http.exchange(request);
+
+        } catch (IOException | KM200Exception e) {
+            stats.failures.increment();
+            throw e;
+
+        } finally {
+            stats.nanos.add(System.nanoTime() - start);
+            stats.requests.increment();
+        }
+    }
+}
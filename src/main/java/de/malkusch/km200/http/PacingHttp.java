@@ -0,0 +1,48 @@
+package de.malkusch.km200.http;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.malkusch.km200.KM200Exception;
+
+/**
+ * Keeps a minimum pause between two requests, to give the KM200 time to
+ * recover.
+ *
+ * The pause is measured from the end of the previous request. Use this as a
+ * transport decorator, i.e. within the serialization of requests.
+ */
+public final class PacingHttp extends Http {
+
+    private final Http http;
+    private final long pauseNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long lastEnd = System.nanoTime();
+
+    public PacingHttp(Http http, Duration pause) {
+        if (pause.isNegative()) {
+            throw new IllegalArgumentException("pause must not be negative");
+        }
+        this.http = http;
+        this.pauseNanos = pause.toNanos();
+        this.lastEnd -= pauseNanos;
+    }
+
+    @Override
+    public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
+        lock.lockInterruptibly();
+        try {
+            var wait = lastEnd + pauseNanos - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            return http.exchange(request);
+
+        } finally {
+            lastEnd = System.nanoTime();
+            lock.unlock();
+        }
+    }
+}
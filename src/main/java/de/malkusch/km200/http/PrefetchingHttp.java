@@ -0,0 +1,250 @@
+package de.malkusch.km200.http;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.malkusch.km200.KM200Exception;
+import de.malkusch.km200.http.Http.Request.Get;
+import de.malkusch.km200.http.Http.Request.Post;
+
+/**
+ * Learns which paths are read after each other and fetches the likely next
+ * paths in advance.
+ *
+ * After a GET of a path, the paths which followed it often enough are fetched
+ * with {@link Priority#IDLE}, i.e. they only take the gateway when no other
+ * request waits for it. A prefetched response answers the next GET of its
+ * path once within the TTL. A POST discards the prefetched response of its
+ * path and any prefetch which was running meanwhile. Use this as a channel
+ * decorator:
+ *
+ * <pre>
+ * {@code
+ * var prefetching = new AtomicReference<PrefetchingHttp>();
+ * var km200 = KM200.builder()
+ *         ...
+ *         .decorateChannel(http -> {
+ *             prefetching.set(new PrefetchingHttp(http, Duration.ofSeconds(10)));
+ *             return prefetching.get();
+ *         })
+ *         .build();
+ * }
+ * </pre>
+ *
+ * A prefetch which is already being served delays an arriving request by one
+ * gateway response at most.
+ */
+public final class PrefetchingHttp extends Http implements AutoCloseable {
+
+    private static final int MAX_SOURCES = 1024;
+    private static final int DECAY_THRESHOLD = 1000;
+
+    private final Http http;
+    private final long ttlNanos;
+    private final long sequenceNanos;
+    private final int support;
+    private final double confidence;
+    private final ConcurrentHashMap<String, Entry> prefetched = new ConcurrentHashMap<>();
+    private final Set<String> fetching = ConcurrentHashMap.newKeySet();
+    private final ExecutorService prefetcher;
+    private final LongAdder prefetches = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final AtomicLong updates = new AtomicLong();
+
+    private final Map<String, Successors> successors = new HashMap<>();
+    private String previous;
+    private long previousTime;
+
+    private static record Entry(Response response, long expires) {
+    }
+
+    private static final class Successors {
+        private final Map<String, Integer> counts = new HashMap<>();
+        private int total;
+    }
+
+    /**
+     * Prefetches paths which followed within 10 seconds at least 3 times and
+     * in at least half of the cases.
+     *
+     * @param ttl
+     *            How long a prefetched response may answer a GET
+     */
+    public PrefetchingHttp(Http http, Duration ttl) {
+        this(http, ttl, Duration.ofSeconds(10), 3, 0.5);
+    }
+
+    /**
+     * @param sequence
+     *            The maximum time between two GETs to count as a sequence
+     * @param support
+     *            How often a path must have followed to be prefetched
+     * @param confidence
+     *            Which share of all followers a path must have to be
+     *            prefetched
+     */
+    public PrefetchingHttp(Http http, Duration ttl, Duration sequence, int support, double confidence) {
+        if (ttl.isNegative() || sequence.isNegative()) {
+            throw new IllegalArgumentException("ttl and sequence must not be negative");
+        }
+        if (support < 1 || confidence <= 0 || confidence > 1) {
+            throw new IllegalArgumentException("support must be positive and confidence in (0, 1]");
+        }
+        this.http = http;
+        this.ttlNanos = ttl.toNanos();
+        this.sequenceNanos = sequence.toNanos();
+        this.support = support;
+        this.confidence = confidence;
+        this.prefetcher = Executors
+                .newSingleThreadExecutor(Thread.ofPlatform().daemon().name("km200-prefetch").factory());
+    }
+
+    @Override
+    public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
+        return switch (request) {
+        case Get get -> get(get);
+        case Post post -> {
+            try {
+                yield http.exchange(post);
+            } finally {
+                updates.incrementAndGet();
+                prefetched.remove(post.path());
+            }
+        }
+        };
+    }
+
+    private Response get(Get get) throws IOException, InterruptedException, KM200Exception {
+        var path = get.path();
+        var next = learn(path);
+
+        try {
+            var entry = prefetched.remove(path);
+            if (entry != null && System.nanoTime() - entry.expires < 0) {
+                hits.increment();
+                return entry.response;
+            }
+            return http.exchange(get);
+
+        } finally {
+            for (var successor : next) {
+                prefetch(successor);
+            }
+        }
+    }
+
+    /**
+     * Counts the path as successor of the previous path.
+     *
+     * @return The likely successors of the path
+     */
+    private synchronized List<String> learn(String path) {
+        var now = System.nanoTime();
+        if (previous != null && !previous.equals(path) && now - previousTime < sequenceNanos) {
+            var followers = successors.get(previous);
+            if (followers == null && successors.size() < MAX_SOURCES) {
+                followers = new Successors();
+                successors.put(previous, followers);
+            }
+            if (followers != null) {
+                followers.counts.merge(path, 1, Integer::sum);
+                followers.total++;
+                if (followers.total > DECAY_THRESHOLD) {
+                    decay(followers);
+                }
+            }
+        }
+        previous = path;
+        previousTime = now;
+
+        var followers = successors.get(path);
+        if (followers == null) {
+            return List.of();
+        }
+        var likely = new ArrayList<String>();
+        followers.counts.forEach((successor, count) -> {
+            if (count >= support && count >= confidence * followers.total) {
+                likely.add(successor);
+            }
+        });
+        return likely;
+    }
+
+    /**
+     * Halves the counts, so that changed access patterns take over.
+     */
+    private static void decay(Successors followers) {
+        followers.counts.replaceAll((path, count) -> count / 2);
+        followers.counts.values().removeIf(count -> count == 0);
+        followers.total = followers.counts.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private void prefetch(String path) {
+        var cached = prefetched.get(path);
+        if (cached != null && System.nanoTime() - cached.expires < 0) {
+            return;
+        }
+        if (!fetching.add(path)) {
+            return;
+        }
+        try {
+            prefetcher.execute(() -> fetch(path));
+
+        } catch (RejectedExecutionException e) {
+            fetching.remove(path);
+        }
+    }
+
+    private void fetch(String path) {
+        try {
+            var version = updates.get();
+            var response = Priority.IDLE.call(() -> http.get(path));
+            var entry = new Entry(response, System.nanoTime() + ttlNanos);
+            prefetched.put(path, entry);
+            if (updates.get() != version) {
+                // An update might have happened after this response
+                prefetched.remove(path, entry);
+                return;
+            }
+            prefetches.increment();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // The next GET asks the KM200
+        } finally {
+            fetching.remove(path);
+        }
+    }
+
+    /**
+     * @return The amount of successful prefetches
+     */
+    public long prefetches() {
+        return prefetches.sum();
+    }
+
+    /**
+     * @return The amount of GETs which were answered by a prefetch
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    @Override
+    public void close() {
+        prefetcher.shutdownNow();
+        prefetched.clear();
+    }
+}
@@ -0,0 +1,57 @@
+package de.malkusch.km200.http;
+
+import java.io.IOException;
+
+import de.malkusch.km200.KM200Exception;
+
+/**
+ * The priority of requests waiting for the gateway in {@link SerializedHttp}.
+ *
+ * Requests are served in order of their priority, and within the same
+ * priority in their order of arrival. The priority is bound to the calling
+ * thread:
+ *
+ * <pre>
+ * {@code
+ * var recording = Priority.BACKGROUND.call(() -> km200.recording(path, day));
+ * }
+ * </pre>
+ */
+public enum Priority {
+
+    INTERACTIVE, BACKGROUND,
+
+    /**
+     * Speculative requests which should only use the gateway when nobody else
+     * waits for it (e.g. {@link PrefetchingHttp}).
+     */
+    IDLE;
+
+    private static final ThreadLocal<Priority> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    @FunctionalInterface
+    public static interface Task<T> {
+        T call() throws IOException, InterruptedException, KM200Exception;
+    }
+
+    /**
+     * @return The priority of the current thread's requests
+     */
+    public static Priority current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the task with this priority for all its requests.
+     */
+    public <T> T call(Task<T> task) throws IOException, InterruptedException, KM200Exception {
+        var previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.call();
+
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+}
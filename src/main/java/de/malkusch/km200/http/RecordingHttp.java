@@ -0,0 +1,235 @@
+package de.malkusch.km200.http;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.malkusch.km200.KM200Exception;
+import de.malkusch.km200.http.Http.Request.Get;
+import de.malkusch.km200.http.Http.Request.Post;
+
+/**
+ * Records the exchanges with the KM200 into a capture file, which can be
+ * served again by {@link ReplayHttp}.
+ *
+ * Bodies are recorded as they were transmitted, i.e. encrypted. Use this as
+ * the innermost transport decorator:
+ *
+ * <pre>
+ * {@code
+ * var km200 = KM200.builder()
+ *         ...
+ *         .decorateTransport(http -> new RecordingHttp(http, Path.of("km200.capture")))
+ *         .build();
+ * }
+ * </pre>
+ *
+ * Each exchange is flushed to the file when it's completed. A capture which
+ * was not closed properly is readable up to its last complete exchange.
+ * Closing the KM200 doesn't close its decorators. Keep a reference to close
+ * the capture file after the KM200:
+ *
+ * <pre>
+ * {@code
+ * var recording = new AtomicReference<RecordingHttp>();
+ * try (var km200 = KM200.builder()
+ *         ...
+ *         .decorateTransport(http -> {
+ *             recording.set(new RecordingHttp(http, Path.of("km200.capture")));
+ *             return recording.get();
+ *         })
+ *         .build()) {
+ *     ...
+ * }
+ * recording.get().close();
+ * }
+ * </pre>
+ */
+public final class RecordingHttp extends Http implements AutoCloseable {
+
+    private static final int MAGIC = 0x4b4d3243; // KM2C
+    private static final int VERSION = 1;
+
+    private final Http http;
+    private final DataOutputStream output;
+    private final long start = System.nanoTime();
+
+    public static enum Outcome {
+
+        /**
+         * The KM200 responded with a status, which might have been an error
+         * status.
+         */
+        RESPONSE,
+
+        TIMEOUT,
+
+        IO_ERROR,
+
+        /**
+         * A {@link KM200Exception} which is not a response status.
+         */
+        ERROR
+    }
+
+    /**
+     * @param offset
+     *            The start relative to the start of the recording
+     * @param status
+     *            The response status, if the outcome is
+     *            {@link Outcome#RESPONSE}
+     * @param message
+     *            The exception message, if the outcome is not
+     *            {@link Outcome#RESPONSE}
+     */
+    public static record Exchange(Duration offset, Duration duration, Request request, Outcome outcome, int status,
+            byte[] body, String message) {
+    }
+
+    public RecordingHttp(Http http, Path file) {
+        this.http = http;
+        try {
+            output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file, CREATE, WRITE, TRUNCATE_EXISTING)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.flush();
+
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't record into " + file, e);
+        }
+    }
+
+    @Override
+    public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
+        var begin = System.nanoTime();
+        try {
+            var response = http.exchange(request);
+            write(begin, request, Outcome.RESPONSE, response.status(), response.body(), "");
+            return response;
+
+        } catch (HttpTimeoutException e) {
+            write(begin, request, Outcome.TIMEOUT, 0, null, e.getMessage());
+            throw e;
+
+        } catch (IOException e) {
+            write(begin, request, Outcome.IO_ERROR, 0, null, e.getMessage());
+            throw e;
+
+        } catch (KM200Exception e) {
+            var status = status(e);
+            if (status > 0) {
+                write(begin, request, Outcome.RESPONSE, status, e.responseBody(), "");
+            } else {
+                write(begin, request, Outcome.ERROR, 0, null, e.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    private static int status(KM200Exception e) {
+        return switch (e) {
+        case KM200Exception.BadRequest badRequest -> 400;
+        case KM200Exception.Forbidden forbidden -> 403;
+        case KM200Exception.NotFound notFound -> 404;
+        case KM200Exception.Locked locked -> 423;
+        case KM200Exception.ServerError serverError -> 500;
+        default -> 0;
+        };
+    }
+
+    private synchronized void write(long begin, Request request, Outcome outcome, int status, byte[] body,
+            String message) throws IOException {
+
+        output.writeLong(begin - start);
+        output.writeLong(System.nanoTime() - begin);
+        switch (request) {
+        case Get get -> {
+            output.writeByte(0);
+            output.writeUTF(get.path());
+        }
+        case Post post -> {
+            output.writeByte(1);
+            output.writeUTF(post.path());
+            output.writeInt(post.length());
+            post.writeTo(output);
+        }
+        }
+        output.writeByte(outcome.ordinal());
+        output.writeInt(status);
+        writeBytes(body);
+        output.writeUTF(message != null ? message : "");
+        output.flush();
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (bytes == null) {
+            output.writeInt(-1);
+            return;
+        }
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads the exchanges of a capture file in their recorded order.
+     */
+    public static List<Exchange> read(Path file) throws IOException {
+        var exchanges = new ArrayList<Exchange>();
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(file + " is not a capture file");
+            }
+            while (true) {
+                var offset = Duration.ofNanos(input.readLong());
+                var duration = Duration.ofNanos(input.readLong());
+                Request request = switch (input.readByte()) {
+                case 0 -> new Get(input.readUTF());
+                case 1 -> new Post(input.readUTF(), readBytes(input));
+                default -> throw new IOException(file + " has an invalid request");
+                };
+                var outcomes = Outcome.values();
+                var outcome = input.readByte();
+                if (outcome < 0 || outcome >= outcomes.length) {
+                    throw new IOException(file + " has an invalid outcome");
+                }
+                var status = input.readInt();
+                var body = readBytes(input);
+                var message = input.readUTF();
+                exchanges.add(new Exchange(offset, duration, request, outcomes[outcome], status, body, message));
+            }
+
+        } catch (EOFException e) {
+            // The end of the capture, a truncated exchange is dropped.
+        }
+        return exchanges;
+    }
+
+    private static byte[] readBytes(DataInputStream input) throws IOException {
+        var length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        var bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        output.close();
+    }
+}
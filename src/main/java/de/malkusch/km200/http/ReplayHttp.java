@@ -0,0 +1,91 @@
+package de.malkusch.km200.http;
+
+import static de.malkusch.km200.http.Http.Response.successfullResponse;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import de.malkusch.km200.KM200Exception;
+import de.malkusch.km200.http.RecordingHttp.Exchange;
+
+/**
+ * A transport which serves the exchanges of a {@link RecordingHttp} capture.
+ *
+ * Exchanges of the same request (method and path) are served in their
+ * recorded order, the last one is repeated. Requests which were not recorded
+ * are answered with 404. Use it with the same passwords and salt as during
+ * the recording:
+ *
+ * <pre>
+ * {@code
+ * var km200 = KM200.builder()
+ *         ...
+ *         .transport(new ReplayHttp(Path.of("km200.capture"), 1))
+ *         .build();
+ * }
+ * </pre>
+ */
+public final class ReplayHttp extends Http {
+
+    private final List<Exchange> exchanges;
+    private final Map<String, ArrayDeque<Exchange>> queues = new HashMap<>();
+    private final double timeScale;
+
+    /**
+     * @param timeScale
+     *            The factor for the recorded durations of the exchanges, e.g.
+     *            1 for the original timing, 0.5 for twice as fast or 0 without
+     *            any delay.
+     */
+    public ReplayHttp(Path capture, double timeScale) throws IOException {
+        if (!(timeScale >= 0)) {
+            throw new IllegalArgumentException("timeScale must not be negative");
+        }
+        this.timeScale = timeScale;
+        this.exchanges = List.copyOf(RecordingHttp.read(capture));
+        for (var exchange : exchanges) {
+            queues.computeIfAbsent(exchange.request().toString(), it -> new ArrayDeque<>()).add(exchange);
+        }
+    }
+
+    /**
+     * @return All recorded exchanges, e.g. to reproduce their offsets
+     */
+    public List<Exchange> exchanges() {
+        return exchanges;
+    }
+
+    @Override
+    public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
+        var exchange = next(request);
+        if (exchange == null) {
+            return successfullResponse(request, 404, new byte[0]);
+        }
+
+        var delay = (long) (exchange.duration().toNanos() * timeScale);
+        if (delay > 0) {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        }
+
+        return switch (exchange.outcome()) {
+        case RESPONSE -> successfullResponse(request, exchange.status(), exchange.body());
+        case TIMEOUT -> throw new HttpTimeoutException(exchange.message());
+        case IO_ERROR -> throw new IOException(exchange.message());
+        case ERROR -> throw new KM200Exception(exchange.message());
+        };
+    }
+
+    private synchronized Exchange next(Request request) {
+        var queue = queues.get(request.toString());
+        if (queue == null) {
+            return null;
+        }
+        return queue.size() > 1 ? queue.poll() : queue.peek();
+    }
+}
@@ -1,28 +1,287 @@
 package de.malkusch.km200.http;
 
 import java.io.IOException;
-import java.util.concurrent.locks.Lock;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import de.malkusch.km200.KM200Exception;
+import de.malkusch.km200.KM200Exception.Overloaded;
 
+/**
+ * Lets only one request at a time reach the gateway.
+ *
+ * Waiting requests are served by their {@link Priority} and within the same
+ * priority in their order of arrival. The amount of waiting requests can be
+ * bounded, an {@link Overflow} policy decides what happens to requests beyond
+ * that capacity.
+ */
 public final class SerializedHttp extends Http {
 
     private final Http http;
-    private final Lock lock = new ReentrantLock();
+    private final int capacity;
+    private final Overflow overflow;
+    private final ReentrantLock mutex = new ReentrantLock();
+    private final Condition space = mutex.newCondition();
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>(
+            Comparator.comparing((Ticket ticket) -> ticket.priority).thenComparingLong(ticket -> ticket.sequence));
+    private Thread owner;
+    private int holds;
+    private long sequence;
+    private int maxQueueDepth;
+    private long overloads;
 
+    private static final class Ticket {
+        private final Priority priority;
+        private final long sequence;
+        private final Condition turn;
+        private boolean dropped;
+
+        private Ticket(Priority priority, long sequence, Condition turn) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.turn = turn;
+        }
+    }
+
+    /**
+     * What happens to a request if the queue of waiting requests is full.
+     */
+    public static sealed interface Overflow {
+
+        static final Overflow REJECT = new Reject();
+        static final Overflow DROP_OLDEST_BACKGROUND = new DropOldestBackground();
+
+        /**
+         * Fails the request with {@link Overloaded}.
+         */
+        static record Reject() implements Overflow {
+        }
+
+        /**
+         * Fails the oldest waiting request of the lowest priority below
+         * {@link Priority#INTERACTIVE} with {@link Overloaded}, and queues the
+         * request instead. Only a request of the same or a lower priority is
+         * dropped. If there's no such request, the request fails.
+         */
+        static record DropOldestBackground() implements Overflow {
+        }
+
+        /**
+         * Waits up to the timeout for a free place in the queue, then fails
+         * with {@link Overloaded}.
+         */
+        static record Wait(Duration timeout) implements Overflow {
+        }
+    }
+
+    /**
+     * An unbounded queue.
+     */
     public SerializedHttp(Http http) {
+        this(http, Integer.MAX_VALUE, Overflow.REJECT);
+    }
+
+    /**
+     * @param capacity
+     *            The maximum amount of waiting requests, excluding the
+     *            request which is currently served.
+     */
+    public SerializedHttp(Http http, int capacity, Overflow overflow) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
         this.http = http;
+        this.capacity = capacity;
+        this.overflow = overflow;
     }
 
     @Override
     public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
-        lock.lockInterruptibly();
+        acquire();
         try {
             return http.exchange(request);
 
         } finally {
-            lock.unlock();
+            release();
+        }
+    }
+
+    @FunctionalInterface
+    public static interface Batch<T> {
+        T run() throws IOException, InterruptedException, KM200Exception;
+    }
+
+    /**
+     * Runs a batch of requests without letting other callers interleave.
+     *
+     * Requests of the batch may go through this instance, which is reentrant
+     * for the calling thread.
+     */
+    public <T> T exclusively(Batch<T> batch) throws IOException, InterruptedException, KM200Exception {
+        acquire();
+        try {
+            return batch.run();
+
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * @return The amount of requests waiting for their turn
+     */
+    public int queueDepth() {
+        mutex.lock();
+        try {
+            return waiting.size();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * @return The highest amount of waiting requests so far
+     */
+    public int maxQueueDepth() {
+        mutex.lock();
+        try {
+            return maxQueueDepth;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * @return The amount of requests which failed with {@link Overloaded}
+     */
+    public long overloads() {
+        mutex.lock();
+        try {
+            return overloads;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    private void acquire() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        var thread = Thread.currentThread();
+        mutex.lockInterruptibly();
+        try {
+            if (owner == thread) {
+                holds++;
+                return;
+            }
+            if (owner == null && waiting.isEmpty()) {
+                own(thread);
+                return;
+            }
+
+            admit();
+            if (owner == null && waiting.isEmpty()) {
+                own(thread);
+                return;
+            }
+
+            var ticket = new Ticket(Priority.current(), sequence++, mutex.newCondition());
+            waiting.add(ticket);
+            maxQueueDepth = Math.max(maxQueueDepth, waiting.size());
+            try {
+                while (!ticket.dropped && (owner != null || waiting.peek() != ticket)) {
+                    ticket.turn.await();
+                }
+            } catch (InterruptedException e) {
+                if (waiting.remove(ticket)) {
+                    space.signal();
+                }
+                signalNext();
+                throw e;
+            }
+            if (ticket.dropped) {
+                throw overloaded("Dropped for a newer request");
+            }
+            waiting.poll();
+            space.signal();
+            own(thread);
+
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Makes space in the queue according to the {@link Overflow} policy.
+     */
+    private void admit() throws InterruptedException {
+        if (waiting.size() < capacity) {
+            return;
+        }
+        switch (overflow) {
+        case Overflow.Reject reject -> throw overloaded("Request queue is full");
+
+        case Overflow.DropOldestBackground drop -> {
+            var priority = Priority.current();
+            Ticket oldest = null;
+            for (var ticket : waiting) {
+                if (ticket.priority.compareTo(Priority.INTERACTIVE) > 0 && ticket.priority.compareTo(priority) >= 0
+                        && (oldest == null
+                        || ticket.priority.compareTo(oldest.priority) > 0
+                        || ticket.priority == oldest.priority && ticket.sequence < oldest.sequence)) {
+                    oldest = ticket;
+                }
+            }
+            if (oldest == null) {
+                throw overloaded("Request queue is full");
+            }
+            waiting.remove(oldest);
+            oldest.dropped = true;
+            oldest.turn.signal();
+        }
+
+        case Overflow.Wait wait -> {
+            var nanos = wait.timeout().toNanos();
+            while (waiting.size() >= capacity && !(owner == null && waiting.isEmpty())) {
+                if (nanos <= 0) {
+                    throw overloaded("Request queue is still full after " + wait.timeout());
+                }
+                nanos = space.awaitNanos(nanos);
+            }
+        }
+        }
+    }
+
+    private Overloaded overloaded(String message) {
+        overloads++;
+        return new Overloaded(message + " (" + capacity + " waiting requests)");
+    }
+
+    private void own(Thread thread) {
+        owner = thread;
+        holds = 1;
+    }
+
+    private void release() {
+        mutex.lock();
+        try {
+            if (--holds == 0) {
+                owner = null;
+                signalNext();
+                space.signal();
+            }
+
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    private void signalNext() {
+        if (owner == null && waiting.peek() instanceof Ticket next) {
+            next.turn.signal();
         }
     }
 }
@@ -1,6 +1,7 @@
 package de.malkusch.km200.http;
 
 import static de.malkusch.km200.http.Http.Response.successfullResponse;
+import static java.util.Objects.requireNonNull;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -11,6 +12,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpTimeoutException;
 import java.time.Duration;
+import java.util.Locale;
 
 import de.malkusch.km200.KM200Exception;
 import de.malkusch.km200.http.Http.Request.Post;
@@ -19,7 +21,9 @@ public final class UrlHttp extends Http {
 
     private final String uri;
     private final String userAgent;
-    private final int timeoutMillis;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final AdaptiveTimeout adaptiveTimeout;
 
     /**
      * Avoid undesired POST retries from UrlConnection
@@ -29,18 +33,37 @@ public final class UrlHttp extends Http {
     }
 
     public UrlHttp(String uri, String userAgent, Duration timeout) {
+        this(uri, userAgent, timeout, timeout, null);
+    }
+
+    /**
+     * @param connectTimeout
+     *            A fixed timeout for establishing the connection
+     * @param readTimeout
+     *            The read timeout per path
+     */
+    public UrlHttp(String uri, String userAgent, Duration connectTimeout, AdaptiveTimeout readTimeout) {
+        this(uri, userAgent, connectTimeout, null, requireNonNull(readTimeout));
+    }
+
+    private UrlHttp(String uri, String userAgent, Duration connectTimeout, Duration readTimeout,
+            AdaptiveTimeout adaptiveTimeout) {
         this.uri = uri;
         this.userAgent = userAgent;
-        this.timeoutMillis = (int) timeout.toMillis();
+        this.connectTimeoutMillis = (int) connectTimeout.toMillis();
+        this.readTimeoutMillis = readTimeout != null ? (int) readTimeout.toMillis() : 0;
+        this.adaptiveTimeout = adaptiveTimeout;
     }
 
     @Override
-    protected Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
-        var connection = connect(request);
+    public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
+        var readTimeout = adaptiveTimeout != null ? adaptiveTimeout.timeout(request.path()) : null;
+        var connection = connect(request, readTimeout);
+        var start = System.nanoTime();
         try {
             if (request instanceof Post post) {
                 try (var output = connection.getOutputStream()) {
-                    output.write(post.body());
+                    post.writeTo(output);
                 }
             }
 
@@ -51,14 +74,21 @@ public final class UrlHttp extends Http {
 
             var input = switch (connection.getErrorStream()) {
             case InputStream error -> error;
-            case null -> connection.getInputStream();
+            case null -> status >= 400 ? InputStream.nullInputStream() : connection.getInputStream();
             };
+            byte[] body;
             try (input) {
-                var body = input.readAllBytes();
-                return successfullResponse(request, status, body);
+                body = input.readAllBytes();
+            }
+            if (adaptiveTimeout != null) {
+                adaptiveTimeout.record(request.path(), Duration.ofNanos(System.nanoTime() - start));
             }
+            return successfullResponse(request, status, body);
 
         } catch (SocketTimeoutException e) {
+            if (adaptiveTimeout != null && isReadTimeout(e)) {
+                adaptiveTimeout.record(request.path(), readTimeout);
+            }
             throw new HttpTimeoutException(request + " timed out");
 
         } finally {
@@ -66,19 +96,30 @@ public final class UrlHttp extends Http {
         }
     }
 
-    private HttpURLConnection connect(Request request) throws IOException {
+    /**
+     * HttpURLConnection might connect again while reading, e.g. after a stale
+     * keep-alive connection. A connect timeout says nothing about the latency
+     * of the path.
+     */
+    private static boolean isReadTimeout(SocketTimeoutException e) {
+        var message = e.getMessage();
+        return message == null || !message.toLowerCase(Locale.ROOT).contains("connect");
+    }
+
+    private HttpURLConnection connect(Request request, Duration readTimeout) throws IOException {
         var uri = this.uri + request.path();
         try {
             if (!(new URI(uri).toURL().openConnection() instanceof HttpURLConnection connection)) {
                 throw new IllegalStateException(uri + " is not a http url");
             }
 
-            connection.setConnectTimeout(timeoutMillis);
-            connection.setReadTimeout(timeoutMillis);
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeout != null ? (int) readTimeout.toMillis() : readTimeoutMillis);
             connection.setRequestProperty("User-Agent", userAgent);
 
-            if (request instanceof Post) {
+            if (request instanceof Post post) {
                 connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(post.length());
                 connection.setRequestProperty("Accept", "application/json");
             }
 
@@ -0,0 +1,204 @@
+package de.malkusch.km200.profile;
+
+import static java.time.temporal.ChronoUnit.MILLIS;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.malkusch.km200.KM200;
+import de.malkusch.km200.KM200Exception;
+import de.malkusch.km200.KM200Profile;
+import de.malkusch.km200.http.Http;
+import de.malkusch.km200.http.UrlHttp;
+
+/**
+ * Measures the capacity of a KM200 gateway into a {@link KM200Profile}.
+ *
+ * The profiler sends GET requests only, it doesn't decrypt the responses and
+ * it doesn't change anything on the heater. It runs in three phases:
+ *
+ * <ol>
+ * <li>Each endpoint is queried several times, each time after a settle pause.
+ * This is its service time without load.</li>
+ * <li>The endpoints are queried in bursts with a shrinking pause until the
+ * gateway fails with a server error or an IO error. The last pause without
+ * failures is the sustainable pause.</li>
+ * <li>After a failure the gateway is queried until it answers again. This is
+ * its recovery time.</li>
+ * </ol>
+ *
+ * The transport should have a generous timeout, so that slow responses are
+ * measured instead of aborted. Don't run the profiler while other clients use
+ * the gateway.
+ */
+public final class KM200Profiler {
+
+    private static final Duration MIN_TIMEOUT = Duration.ofSeconds(1);
+    private static final Duration MAX_RECOVERY = Duration.ofMinutes(5);
+    private static final Duration RECOVERY_POLL = Duration.ofMillis(100);
+
+    private final Http http;
+    private final int samples;
+    private final int burst;
+    private final Duration settle;
+
+    public KM200Profiler(Http http) {
+        this(http, 10, 20, Duration.ofSeconds(1));
+    }
+
+    /**
+     * @param samples
+     *            The amount of unloaded queries per endpoint
+     * @param burst
+     *            The amount of queries per pause while searching the
+     *            sustainable pause
+     * @param settle
+     *            The pause before each unloaded query and each burst
+     */
+    public KM200Profiler(Http http, int samples, int burst, Duration settle) {
+        if (samples < 1 || burst < 1) {
+            throw new IllegalArgumentException("samples and burst must be positive");
+        }
+        if (settle.isNegative()) {
+            throw new IllegalArgumentException("settle must not be negative");
+        }
+        this.http = http;
+        this.samples = samples;
+        this.burst = burst;
+        this.settle = settle;
+    }
+
+    public KM200Profile profile(List<String> paths) throws IOException, InterruptedException {
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("paths must not be empty");
+        }
+
+        var endpoints = new ArrayList<KM200Profile.Endpoint>();
+        for (var path : paths) {
+            endpoints.add(serviceTime(path));
+        }
+        var slowest = endpoints.stream().mapToLong(it -> it.max().toNanos()).max().getAsLong();
+        var timeout = Duration.ofNanos(slowest * 2);
+        if (timeout.compareTo(MIN_TIMEOUT) < 0) {
+            timeout = MIN_TIMEOUT;
+        }
+
+        var median = endpoints.stream().mapToLong(it -> it.median().toNanos()).max().getAsLong();
+        var pause = Duration.ofNanos(median * 2).truncatedTo(MILLIS);
+        Duration sustained = null;
+        var recovery = Duration.ZERO;
+        while (true) {
+            sleep(settle);
+            var failure = burst(paths, pause);
+            if (failure != 0) {
+                recovery = recover(paths.get(0), failure);
+                if (sustained == null) {
+                    // Even the first pause was too short, guess a longer one.
+                    sustained = pause.multipliedBy(2);
+                }
+                break;
+            }
+            sustained = pause;
+            if (pause.isZero()) {
+                break;
+            }
+            pause = pause.toMillis() > 1 ? pause.dividedBy(2).truncatedTo(MILLIS) : Duration.ZERO;
+        }
+
+        return new KM200Profile(timeout, sustained, recovery, endpoints);
+    }
+
+    private KM200Profile.Endpoint serviceTime(String path) throws IOException, InterruptedException {
+        var times = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            sleep(settle);
+            var start = System.nanoTime();
+            try {
+                http.tryGet(path);
+
+            } catch (KM200Exception e) {
+                // An error response is still a response of the gateway
+            }
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return new KM200Profile.Endpoint(path, //
+                Duration.ofNanos(times[(samples - 1) / 2]), //
+                Duration.ofNanos(times[(int) Math.ceil(samples * 0.99) - 1]), //
+                Duration.ofNanos(times[samples - 1]));
+    }
+
+    /**
+     * @return The nano time of the first failure, or 0 if the gateway sustained
+     *         the burst
+     */
+    private long burst(List<String> paths, Duration pause) throws InterruptedException {
+        for (int i = 0; i < burst; i++) {
+            if (i > 0) {
+                sleep(pause);
+            }
+            try {
+                http.tryGet(paths.get(i % paths.size()));
+
+            } catch (KM200Exception | IOException e) {
+                return System.nanoTime();
+            }
+        }
+        return 0;
+    }
+
+    private Duration recover(String path, long failure) throws IOException, InterruptedException {
+        while (true) {
+            try {
+                http.tryGet(path);
+                return Duration.ofNanos(System.nanoTime() - failure);
+
+            } catch (KM200Exception.ServerError | IOException e) {
+                var recovery = Duration.ofNanos(System.nanoTime() - failure);
+                if (recovery.compareTo(MAX_RECOVERY) > 0) {
+                    throw new IOException("The KM200 didn't recover within " + MAX_RECOVERY, e);
+                }
+                sleep(RECOVERY_POLL);
+
+            } catch (KM200Exception e) {
+                // Any other error response shows that the gateway answers again
+                return Duration.ofNanos(System.nanoTime() - failure);
+            }
+        }
+    }
+
+    private static void sleep(Duration duration) throws InterruptedException {
+        if (duration.isPositive()) {
+            TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+        }
+    }
+
+    /**
+     * Profiles a KM200 which is configured by the environment variable
+     * KM200_URI, and optionally KM200_USER_AGENT.
+     *
+     * @param args
+     *            The profile file and optionally the paths to profile e.g.
+     *            {@code km200-profile.json /gateway/DateTime /system/sensors}
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: KM200Profiler <profile file> [path…]");
+            System.exit(1);
+        }
+        var file = Path.of(args[0]);
+        var paths = args.length > 1 ? List.of(args).subList(1, args.length) : List.of("/gateway/DateTime", "/system");
+
+        var uri = System.getenv("KM200_URI").replaceAll("/*$", "");
+        var userAgent = System.getenv().getOrDefault("KM200_USER_AGENT", KM200.USER_AGENT);
+        var http = new UrlHttp(uri, userAgent, Duration.ofMinutes(1));
+        var profile = new KM200Profiler(http).profile(paths);
+        profile.save(file);
+        System.out.println(profile);
+    }
+}
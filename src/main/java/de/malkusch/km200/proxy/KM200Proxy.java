@@ -0,0 +1,272 @@
+package de.malkusch.km200.proxy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.malkusch.km200.KM200;
+import de.malkusch.km200.KM200Exception;
+import de.malkusch.km200.KM200Result;
+import de.malkusch.km200.http.Priority;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * A local HTTP proxy which lets many processes share one KM200.
+ *
+ * All requests of all clients go through one {@link KM200}, i.e. they are
+ * serialized onto the gateway. The proxy listens on the loopback interface
+ * only and speaks plain JSON:
+ *
+ * <pre>
+ * GET  /heatingCircuits/hc1/roomtemperature          → the decrypted JSON
+ * POST /heatingCircuits/hc1/temperatureRoomManual {"value":21.5}
+ * </pre>
+ *
+ * Reads are answered from a cache within its TTL, concurrent reads of the same
+ * path share one query. Updates invalidate the path. A client may send the
+ * header {@code X-KM200-Priority: background} to yield to interactive
+ * requests. Failures are answered with the gateway's status (403, 404, 423),
+ * 503 if the request queue is full or 502 for other gateway failures.
+ *
+ * Updates need the header {@code Content-Type: application/json} and must not
+ * have an {@code Origin} header. A web page in a local browser can't send such
+ * a request without a CORS preflight, which the proxy doesn't answer.
+ */
+public final class KM200Proxy implements AutoCloseable {
+
+    static final String PRIORITY_HEADER = "X-KM200-Priority";
+
+    private final KM200 km200;
+    private final long ttlNanos;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ConcurrentHashMap<String, CompletableFuture<Cached>> cache = new ConcurrentHashMap<>();
+
+    private static record Cached(KM200Result result, long time) {
+    }
+
+    /**
+     * Starts the proxy.
+     *
+     * @param port
+     *            The local port, or 0 for any free port
+     * @param ttl
+     *            How long a read is answered from the cache
+     */
+    public KM200Proxy(KM200 km200, int port, Duration ttl) throws IOException {
+        this.km200 = km200;
+        this.ttlNanos = ttl.toNanos();
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("km200-proxy-", 0).factory());
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            var path = exchange.getRequestURI().toString();
+            var priority = "background".equalsIgnoreCase(exchange.getRequestHeaders().getFirst(PRIORITY_HEADER))
+                    ? Priority.BACKGROUND
+                    : Priority.INTERACTIVE;
+
+            try {
+                switch (exchange.getRequestMethod()) {
+                case "GET" -> query(exchange, path, priority);
+                case "POST" -> update(exchange, path, priority);
+                default -> respond(exchange, 405, "Method not allowed");
+                }
+
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, e.getMessage());
+
+            } catch (KM200Exception e) {
+                respond(exchange, status(e), e.getMessage());
+
+            } catch (IOException e) {
+                respond(exchange, 502, e.getMessage());
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "Interrupted");
+            }
+        }
+    }
+
+    private void query(HttpExchange exchange, String path, Priority priority)
+            throws IOException, InterruptedException {
+
+        var cached = cached(path, priority);
+        var age = Duration.ofNanos(System.nanoTime() - cached.time);
+        exchange.getResponseHeaders().set("Age", Long.toString(age.toSeconds()));
+        switch (cached.result) {
+        case KM200Result.Value value -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            respond(exchange, 200, value.json());
+        }
+        case KM200Result.Forbidden forbidden -> respond(exchange, 403, path + " is forbidden");
+        case KM200Result.NotFound notFound -> respond(exchange, 404, path + " was not found");
+        case KM200Result.Locked locked -> respond(exchange, 423, path + " is locked");
+        case KM200Result.Failure failure when failure.cause() instanceof KM200Exception e -> respond(exchange,
+                status(e), e.getMessage());
+        case KM200Result.Failure failure -> respond(exchange, 502, failure.cause().getMessage());
+        }
+    }
+
+    /**
+     * Returns a cached result within its TTL, or queries it once for all
+     * concurrent readers.
+     */
+    private Cached cached(String path, Priority priority) throws IOException, InterruptedException {
+        while (true) {
+            var future = cache.get(path);
+            if (future != null) {
+                try {
+                    var cached = future.get();
+                    if (System.nanoTime() - cached.time < ttlNanos) {
+                        return cached;
+                    }
+                } catch (ExecutionException e) {
+                    // The query of another reader failed, this reader tries again.
+                }
+                cache.remove(path, future);
+                continue;
+            }
+
+            var query = new CompletableFuture<Cached>();
+            if (cache.putIfAbsent(path, query) != null) {
+                continue;
+            }
+            try {
+                var result = priority.call(() -> km200.tryQuery(path));
+                var cached = new Cached(result, System.nanoTime());
+                query.complete(cached);
+                if (result instanceof KM200Result.Failure) {
+                    cache.remove(path, query);
+                }
+                return cached;
+
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                cache.remove(path, query);
+                query.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    private void update(HttpExchange exchange, String path, Priority priority)
+            throws IOException, InterruptedException {
+
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            respond(exchange, 403, "Cross-origin updates are forbidden");
+            return;
+        }
+        var contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).matches("application/json\\s*(;.*)?")) {
+            respond(exchange, 415, "Updates need the content type application/json");
+            return;
+        }
+
+        var value = parse(exchange.getRequestBody().readAllBytes()).get("value");
+        if (value == null || !(value.isNumber() || value.isTextual())) {
+            throw new IllegalArgumentException("Update needs a number or string value");
+        }
+
+        try {
+            priority.call(() -> {
+                if (value.isNumber()) {
+                    km200.update(path, value.decimalValue());
+                } else {
+                    km200.update(path, value.asText());
+                }
+                return null;
+            });
+
+        } finally {
+            cache.remove(path);
+        }
+        respond(exchange, 204, null);
+    }
+
+    private JsonNode parse(byte[] body) {
+        try {
+            return mapper.readTree(body);
+        } catch (JacksonException e) {
+            throw new IllegalArgumentException("Invalid JSON", e);
+        }
+    }
+
+    private static int status(KM200Exception e) {
+        return switch (e) {
+        case KM200Exception.BadRequest badRequest -> 400;
+        case KM200Exception.Forbidden forbidden -> 403;
+        case KM200Exception.NotFound notFound -> 404;
+        case KM200Exception.Locked locked -> 423;
+        case KM200Exception.Overloaded overloaded -> 503;
+        default -> 502;
+        };
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        var bytes = body.getBytes(UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    /**
+     * Runs the proxy until the JVM is terminated. The KM200 is configured by
+     * the environment variables KM200_URI, KM200_GATEWAY_PASSWORD,
+     * KM200_PRIVATE_PASSWORD and KM200_SALT.
+     *
+     * @param args
+     *            The port and optionally the cache TTL in seconds e.g.
+     *            {@code 8200 10}
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: KM200Proxy <port> [ttl seconds]");
+            System.exit(1);
+        }
+        var port = Integer.parseInt(args[0]);
+        var ttl = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 10);
+
+        var km200 = KM200.builder() //
+                .uri(System.getenv("KM200_URI")) //
+                .gatewayPassword(System.getenv("KM200_GATEWAY_PASSWORD")) //
+                .privatePassword(System.getenv("KM200_PRIVATE_PASSWORD")) //
+                .salt(System.getenv("KM200_SALT")) //
+                .build();
+
+        var proxy = new KM200Proxy(km200, port, ttl);
+        Runtime.getRuntime().addShutdownHook(new Thread(proxy::close));
+    }
+}
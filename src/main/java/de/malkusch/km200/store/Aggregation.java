@@ -0,0 +1,9 @@
+package de.malkusch.km200.store;
+
+/**
+ * How {@link TimeSeriesStore#downsample(String, long, long, java.time.Duration, Aggregation)}
+ * combines the samples of a bucket.
+ */
+public enum Aggregation {
+    MIN, MAX, MEAN, SUM, FIRST, LAST, COUNT
+}
@@ -0,0 +1,34 @@
+package de.malkusch.km200.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads bit sequences from a region of a buffer without copying it, most
+ * significant bit first.
+ */
+final class BitInput {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private long bits;
+
+    BitInput(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    long read(int count) {
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value = (value << 1) | (readBit() ? 1 : 0);
+        }
+        return value;
+    }
+
+    boolean readBit() {
+        var b = buffer.get(offset + (int) (bits >>> 3));
+        var bit = (b & (0x80 >>> (bits & 7))) != 0;
+        bits++;
+        return bit;
+    }
+}
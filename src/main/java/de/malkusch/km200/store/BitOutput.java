@@ -0,0 +1,42 @@
+package de.malkusch.km200.store;
+
+import java.util.Arrays;
+
+/**
+ * Writes bit sequences into a growing byte array, most significant bit first.
+ */
+final class BitOutput {
+
+    private byte[] bytes = new byte[256];
+    private long bits;
+
+    void write(long value, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            writeBit((value >>> i & 1) == 1);
+        }
+    }
+
+    void writeBit(boolean bit) {
+        var index = (int) (bits >>> 3);
+        if (index == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        if (bit) {
+            bytes[index] |= (byte) (0x80 >>> (bits & 7));
+        }
+        bits++;
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    int length() {
+        return (int) ((bits + 7) >>> 3);
+    }
+
+    void reset() {
+        Arrays.fill(bytes, 0, length(), (byte) 0);
+        bits = 0;
+    }
+}
@@ -0,0 +1,122 @@
+package de.malkusch.km200.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses a block of samples like Facebook's Gorilla: timestamps as delta
+ * of deltas and values as the XOR with their predecessor.
+ *
+ * Polled values change rarely and are polled in a constant rate, so most
+ * samples need only two bits.
+ */
+final class BlockCodec {
+
+    private BlockCodec() {
+    }
+
+    @FunctionalInterface
+    static interface SampleConsumer {
+        void accept(long timestamp, double value);
+    }
+
+    static void encode(long[] timestamps, double[] values, int count, BitOutput output) {
+        output.write(timestamps[0], 64);
+        output.write(Double.doubleToRawLongBits(values[0]), 64);
+
+        long previousTimestamp = timestamps[0];
+        long previousDelta = 0;
+        long previousValue = Double.doubleToRawLongBits(values[0]);
+        int previousLeading = Integer.MAX_VALUE;
+        int previousTrailing = 0;
+
+        for (int i = 1; i < count; i++) {
+            var delta = timestamps[i] - previousTimestamp;
+            var deltaOfDelta = delta - previousDelta;
+            if (deltaOfDelta == 0) {
+                output.writeBit(false);
+            } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+                output.write(0b10, 2);
+                output.write(deltaOfDelta, 7);
+            } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+                output.write(0b110, 3);
+                output.write(deltaOfDelta, 9);
+            } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+                output.write(0b1110, 4);
+                output.write(deltaOfDelta, 12);
+            } else {
+                output.write(0b1111, 4);
+                output.write(deltaOfDelta, 64);
+            }
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+
+            var value = Double.doubleToRawLongBits(values[i]);
+            var xor = value ^ previousValue;
+            if (xor == 0) {
+                output.writeBit(false);
+            } else {
+                output.writeBit(true);
+                var leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                var trailing = Long.numberOfTrailingZeros(xor);
+                if (leading >= previousLeading && trailing >= previousTrailing) {
+                    output.writeBit(false);
+                    output.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                } else {
+                    output.writeBit(true);
+                    var meaningful = 64 - leading - trailing;
+                    output.write(leading, 5);
+                    output.write(meaningful == 64 ? 0 : meaningful, 6);
+                    output.write(xor >>> trailing, meaningful);
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+            previousValue = value;
+        }
+    }
+
+    static void decode(ByteBuffer buffer, int offset, int count, SampleConsumer consumer) {
+        var input = new BitInput(buffer, offset);
+        var timestamp = input.read(64);
+        var value = input.read(64);
+        consumer.accept(timestamp, Double.longBitsToDouble(value));
+
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            long deltaOfDelta;
+            if (!input.readBit()) {
+                deltaOfDelta = 0;
+            } else if (!input.readBit()) {
+                deltaOfDelta = signed(input.read(7), 7);
+            } else if (!input.readBit()) {
+                deltaOfDelta = signed(input.read(9), 9);
+            } else if (!input.readBit()) {
+                deltaOfDelta = signed(input.read(12), 12);
+            } else {
+                deltaOfDelta = input.read(64);
+            }
+            delta += deltaOfDelta;
+            timestamp += delta;
+
+            if (input.readBit()) {
+                if (input.readBit()) {
+                    leading = (int) input.read(5);
+                    var meaningful = (int) input.read(6);
+                    if (meaningful == 0) {
+                        meaningful = 64;
+                    }
+                    trailing = 64 - leading - meaningful;
+                }
+                var xor = input.read(64 - leading - trailing) << trailing;
+                value ^= xor;
+            }
+            consumer.accept(timestamp, Double.longBitsToDouble(value));
+        }
+    }
+
+    private static long signed(long value, int bits) {
+        return value << (64 - bits) >> (64 - bits);
+    }
+}
@@ -0,0 +1,208 @@
+package de.malkusch.km200.store;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.malkusch.km200.KM200;
+import de.malkusch.km200.KM200Exception;
+import de.malkusch.km200.KM200Recording;
+import de.malkusch.km200.http.Priority;
+
+/**
+ * Copies the daily recordings of the KM200 into a {@link TimeSeriesStore}
+ * and fetches only what is missing.
+ *
+ * A day is complete once it is over and its recording was stored. Complete
+ * days are never fetched again, also not after a restart, because they are
+ * tracked in an append-only state file. The current day stays open and is
+ * fetched on each sync, storing only the samples whose period has ended.
+ *
+ * <pre>
+ * {@code
+ * var sync = new RecordingSync(km200, store, Path.of("km200-data/sync.state"));
+ * sync.sync("/recordings/heatSources/total/energyMonitoring/consumption", LocalDate.of(2023, 1, 1));
+ * }
+ * </pre>
+ *
+ * Fetches use {@link Priority#BACKGROUND}, so interactive requests overtake
+ * them. This class is thread safe.
+ */
+public final class RecordingSync implements AutoCloseable {
+
+    private final KM200 km200;
+    private final TimeSeriesStore store;
+    private final Clock clock;
+    private final Path stateFile;
+    private final Map<String, Days> complete = new HashMap<>();
+    private final FileChannel state;
+
+    /**
+     * A set of days, indexed relative to the earliest day.
+     */
+    private static final class Days {
+        private LocalDate origin;
+        private BitSet days = new BitSet();
+
+        private boolean contains(LocalDate day) {
+            var index = origin.until(day, ChronoUnit.DAYS);
+            return index >= 0 && index <= Integer.MAX_VALUE && days.get((int) index);
+        }
+
+        private void add(LocalDate day) {
+            if (origin == null) {
+                origin = day;
+
+            } else if (day.isBefore(origin)) {
+                var shift = (int) day.until(origin, ChronoUnit.DAYS);
+                var shifted = new BitSet();
+                days.stream().forEach(index -> shifted.set(index + shift));
+                days = shifted;
+                origin = day;
+            }
+            days.set((int) origin.until(day, ChronoUnit.DAYS));
+        }
+    }
+
+    public RecordingSync(KM200 km200, TimeSeriesStore store, Path stateFile) throws IOException {
+        this(km200, store, stateFile, Clock.systemDefaultZone());
+    }
+
+    RecordingSync(KM200 km200, TimeSeriesStore store, Path stateFile, Clock clock) throws IOException {
+        this.km200 = requireNonNull(km200);
+        this.store = requireNonNull(store);
+        this.stateFile = requireNonNull(stateFile);
+        this.clock = requireNonNull(clock);
+        load();
+        this.state = FileChannel.open(stateFile, CREATE, WRITE, APPEND);
+    }
+
+    /**
+     * Fetches all incomplete days from the first day until today.
+     *
+     * The sync stops at the first failing day, because the store only
+     * accepts samples in chronological order. The next sync continues with
+     * that day.
+     *
+     * @return The amount of fetched days
+     */
+    public int sync(String path, LocalDate first) throws KM200Exception, IOException, InterruptedException {
+        var today = LocalDate.now(clock);
+        var fetched = 0;
+        for (var day = first; !day.isAfter(today); day = day.plusDays(1)) {
+            if (isComplete(path, day)) {
+                continue;
+            }
+            var interval = day;
+            var recording = Priority.BACKGROUND.call(() -> km200.recording(path, interval));
+            fetched++;
+
+            if (day.isBefore(today)) {
+                store.append(recording);
+                store.flush();
+                complete(path, day);
+
+            } else {
+                appendEnded(recording);
+            }
+        }
+        return fetched;
+    }
+
+    /**
+     * @return true if the day of the path doesn't need to be fetched anymore
+     */
+    public synchronized boolean isComplete(String path, LocalDate day) {
+        var days = complete.get(path);
+        return days != null && days.contains(day);
+    }
+
+    /**
+     * Appends the samples whose period has ended, i.e. which are followed by
+     * a sample which has begun.
+     */
+    private void appendEnded(KM200Recording recording) throws IOException {
+        var now = clock.millis();
+        for (int i = 0; i + 1 < recording.size(); i++) {
+            var end = recording.timestamp(i + 1);
+            if (end > now) {
+                break;
+            }
+            if (!recording.isMissing(i)) {
+                store.append(recording.path(), recording.timestamp(i), recording.value(i));
+            }
+        }
+    }
+
+    private synchronized void complete(String path, LocalDate day) throws IOException {
+        var line = ByteBuffer.wrap((day + "\t" + path + "\n").getBytes(UTF_8));
+        while (line.hasRemaining()) {
+            state.write(line);
+        }
+        state.force(false);
+        complete.computeIfAbsent(path, it -> new Days()).add(day);
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(stateFile)) {
+            return;
+        }
+        dropIncompleteLine();
+        try (var lines = Files.lines(stateFile, UTF_8)) {
+            lines.forEach(line -> {
+                var separator = line.indexOf('\t');
+                if (separator < 0) {
+                    return;
+                }
+                try {
+                    var day = LocalDate.parse(line.substring(0, separator));
+                    var path = line.substring(separator + 1);
+                    complete.computeIfAbsent(path, it -> new Days()).add(day);
+
+                } catch (DateTimeParseException e) {
+                    // Ignore a corrupted line, its day is fetched again
+                }
+            });
+        }
+    }
+
+    /**
+     * A crash might have left a truncated last line, which is removed.
+     */
+    private void dropIncompleteLine() throws IOException {
+        try (var channel = FileChannel.open(stateFile, READ, WRITE)) {
+            var position = channel.size();
+            var last = ByteBuffer.allocate(1);
+            while (position > 0) {
+                last.clear();
+                channel.read(last, position - 1);
+                if (last.get(0) == '\n') {
+                    break;
+                }
+                position--;
+            }
+            channel.truncate(position);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        state.close();
+    }
+}
@@ -0,0 +1,136 @@
+package de.malkusch.km200.store;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+
+import de.malkusch.km200.store.BlockCodec.SampleConsumer;
+
+/**
+ * An append-only file of compressed blocks.
+ *
+ * Each block starts with a header of its sample count, first and last
+ * timestamp and length, which allows skipping blocks outside a queried range
+ * without decoding them. Reads go through a memory mapping of the file.
+ */
+final class Segment implements AutoCloseable {
+
+    static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path file;
+    private final FileChannel channel;
+    private long size;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private MappedByteBuffer mapping;
+
+    Segment(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, CREATE, READ, WRITE);
+        recover();
+    }
+
+    /**
+     * Scans the block headers and drops a truncated block from a crash.
+     */
+    private void recover() throws IOException {
+        var fileSize = channel.size();
+        var header = ByteBuffer.allocate(HEADER_SIZE);
+        long position = 0;
+        while (position + HEADER_SIZE <= fileSize) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            header.getInt();
+            header.getLong();
+            var last = header.getLong();
+            var length = header.getInt();
+            if (length < 0 || position + HEADER_SIZE + length > fileSize) {
+                break;
+            }
+            lastTimestamp = last;
+            position += HEADER_SIZE + length;
+        }
+        if (position < fileSize) {
+            channel.truncate(position);
+        }
+        size = position;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * @return The last timestamp in this segment, or Long.MIN_VALUE if it's
+     *         empty
+     */
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    void append(long[] timestamps, double[] values, int count, BitOutput output) throws IOException {
+        output.reset();
+        BlockCodec.encode(timestamps, values, count, output);
+        var length = output.length();
+
+        var block = ByteBuffer.allocate(HEADER_SIZE + length);
+        block.putInt(count).putLong(timestamps[0]).putLong(timestamps[count - 1]).putInt(length);
+        block.put(output.bytes(), 0, length);
+        block.flip();
+        var position = size;
+        while (block.hasRemaining()) {
+            position += channel.write(block, position);
+        }
+        size = position;
+        lastTimestamp = timestamps[count - 1];
+    }
+
+    void scan(long from, long to, SampleConsumer consumer) throws IOException {
+        var buffer = mapping();
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.limit()) {
+            var count = buffer.getInt(position);
+            var first = buffer.getLong(position + Integer.BYTES);
+            var last = buffer.getLong(position + Integer.BYTES + Long.BYTES);
+            var length = buffer.getInt(position + Integer.BYTES + Long.BYTES + Long.BYTES);
+            if (last >= from && first <= to) {
+                BlockCodec.decode(buffer, position + HEADER_SIZE, count, (timestamp, value) -> {
+                    if (timestamp >= from && timestamp <= to) {
+                        consumer.accept(timestamp, value);
+                    }
+                });
+            }
+            if (first > to) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+    }
+
+    private MappedByteBuffer mapping() throws IOException {
+        if (mapping == null || mapping.capacity() != size) {
+            mapping = channel.map(MapMode.READ_ONLY, 0, size);
+        }
+        return mapping;
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,114 @@
+package de.malkusch.km200.store;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import de.malkusch.km200.store.BlockCodec.SampleConsumer;
+
+/**
+ * The samples of one path in a directory of segment files. New samples are
+ * buffered until a block is full.
+ */
+final class Series implements AutoCloseable {
+
+    static final int BLOCK_SIZE = 128;
+    static final long SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final String SUFFIX = ".segment";
+
+    private final Path directory;
+    private final List<Segment> segments = new ArrayList<>();
+    private final long[] pendingTimestamps = new long[BLOCK_SIZE];
+    private final double[] pendingValues = new double[BLOCK_SIZE];
+    private final BitOutput output = new BitOutput();
+    private int pending;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    Series(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        try (var files = Files.list(directory)) {
+            var sorted = files.filter(it -> it.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparingLong(Series::firstTimestamp)).toList();
+            for (var file : sorted) {
+                var segment = new Segment(file);
+                segments.add(segment);
+                lastTimestamp = Math.max(lastTimestamp, segment.lastTimestamp());
+            }
+        }
+    }
+
+    private static long firstTimestamp(Path file) {
+        var name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    synchronized long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * @return false if the sample was dropped, because it was not newer than
+     *         the last sample
+     */
+    synchronized boolean append(long timestamp, double value) throws IOException {
+        if (timestamp <= lastTimestamp) {
+            return false;
+        }
+        pendingTimestamps[pending] = timestamp;
+        pendingValues[pending] = value;
+        pending++;
+        lastTimestamp = timestamp;
+        if (pending == BLOCK_SIZE) {
+            flush();
+        }
+        return true;
+    }
+
+    synchronized void flush() throws IOException {
+        if (pending == 0) {
+            return;
+        }
+        var segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.size() >= SEGMENT_SIZE) {
+            segment = new Segment(directory.resolve(pendingTimestamps[0] + SUFFIX));
+            segments.add(segment);
+        }
+        segment.append(pendingTimestamps, pendingValues, pending, output);
+        pending = 0;
+    }
+
+    synchronized void scan(long from, long to, SampleConsumer consumer) throws IOException {
+        for (var segment : segments) {
+            if (segment.lastTimestamp() >= from) {
+                segment.scan(from, to, consumer);
+            }
+        }
+        for (int i = 0; i < pending; i++) {
+            if (pendingTimestamps[i] >= from && pendingTimestamps[i] <= to) {
+                consumer.accept(pendingTimestamps[i], pendingValues[i]);
+            }
+        }
+    }
+
+    synchronized void force() throws IOException {
+        for (var segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Writes the buffered samples and forces them to the storage device.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        force();
+        for (var segment : segments) {
+            segment.close();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package de.malkusch.km200.store;
+
+import java.util.Arrays;
+
+/**
+ * Samples of a path ordered by their timestamp.
+ */
+public final class TimeSeries {
+
+    private final String path;
+    private final long[] timestamps;
+    private final double[] values;
+
+    TimeSeries(String path, long[] timestamps, double[] values) {
+        this.path = path;
+        this.timestamps = timestamps;
+        this.values = values;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @return The epoch milliseconds of the sample
+     */
+    public long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double value(int index) {
+        return values[index];
+    }
+
+    public long[] timestamps() {
+        return timestamps.clone();
+    }
+
+    public double[] values() {
+        return values.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [%d samples]", path, size());
+    }
+
+    static final class Builder {
+        private final String path;
+        private long[] timestamps = new long[64];
+        private double[] values = new double[64];
+        private int size;
+
+        Builder(String path) {
+            this.path = path;
+        }
+
+        void add(long timestamp, double value) {
+            if (size == values.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+
+        TimeSeries build() {
+            return new TimeSeries(path, Arrays.copyOf(timestamps, size), Arrays.copyOf(values, size));
+        }
+    }
+}
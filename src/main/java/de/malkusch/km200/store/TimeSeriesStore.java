@@ -0,0 +1,221 @@
+package de.malkusch.km200.store;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import de.malkusch.km200.KM200;
+import de.malkusch.km200.KM200Exception;
+import de.malkusch.km200.KM200Recording;
+
+/**
+ * A local store for polled and recorded values of a KM200.
+ *
+ * Each path is stored in its own directory of append-only segment files.
+ * Samples are compressed in blocks by delta of delta encoded timestamps and
+ * XOR encoded values, which needs only a few bits for a constantly polled
+ * value. Reads are served from memory mapped segments.
+ *
+ * <pre>
+ * {@code
+ * try (var store = new TimeSeriesStore(Path.of("km200-data"))) {
+ *     store.queryDouble(km200, "/heatingCircuits/hc1/roomtemperature");
+ *
+ *     var now = System.currentTimeMillis();
+ *     var lastDay = store.downsample("/heatingCircuits/hc1/roomtemperature",
+ *             now - Duration.ofDays(1).toMillis(), now, Duration.ofHours(1), Aggregation.MEAN);
+ * }
+ * }
+ * </pre>
+ *
+ * Samples of a path must be appended in chronological order, older samples
+ * are dropped. New samples are buffered in blocks of 128
+ * samples, call {@link #flush()} to write incomplete blocks. This class is
+ * thread safe.
+ */
+public final class TimeSeriesStore implements AutoCloseable {
+
+    private final Path directory;
+    private final Map<String, Series> series = new HashMap<>();
+
+    public TimeSeriesStore(Path directory) throws IOException {
+        this.directory = requireNonNull(directory);
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Queries the value of the path and stores it with the current time.
+     */
+    public double queryDouble(KM200 km200, String path) throws KM200Exception, IOException, InterruptedException {
+        var value = km200.queryDouble(path);
+        append(path, System.currentTimeMillis(), value);
+        return value;
+    }
+
+    /**
+     * Stores the samples of the recording which are newer than the last
+     * sample of its path. Missing samples are skipped.
+     *
+     * @return The amount of stored samples
+     */
+    public int append(KM200Recording recording) throws IOException {
+        var series = series(recording.path());
+        var appended = 0;
+        for (int i = 0; i < recording.size(); i++) {
+            if (!recording.isMissing(i) && series.append(recording.timestamp(i), recording.value(i))) {
+                appended++;
+            }
+        }
+        return appended;
+    }
+
+    /**
+     * @param timestamp
+     *            The epoch milliseconds of the sample
+     * @return false if the sample was dropped, because it was not newer than
+     *         the last sample of the path
+     */
+    public boolean append(String path, long timestamp, double value) throws IOException {
+        return series(path).append(timestamp, value);
+    }
+
+    /**
+     * @return The epoch milliseconds of the last sample of the path, or
+     *         Long.MIN_VALUE if there's none
+     */
+    public long lastTimestamp(String path) throws IOException {
+        return series(path).lastTimestamp();
+    }
+
+    /**
+     * @return All samples from (inclusive) to (inclusive) the epoch
+     *         milliseconds
+     */
+    public TimeSeries range(String path, long from, long to) throws IOException {
+        var builder = new TimeSeries.Builder(path);
+        series(path).scan(from, to, builder::add);
+        return builder.build();
+    }
+
+    /**
+     * Aggregates the samples into buckets of the given size. A bucket starts
+     * at a multiple of its size since the epoch, empty buckets are omitted.
+     */
+    public TimeSeries downsample(String path, long from, long to, Duration bucket, Aggregation aggregation)
+            throws IOException {
+
+        var builder = new TimeSeries.Builder(path);
+        var downsampler = new Downsampler(bucket.toMillis(), aggregation, builder);
+        series(path).scan(from, to, downsampler);
+        downsampler.finish();
+        return builder.build();
+    }
+
+    /**
+     * @return All stored paths
+     */
+    public Set<String> paths() throws IOException {
+        var paths = new TreeSet<String>();
+        try (var directories = Files.list(directory)) {
+            directories.filter(Files::isDirectory)
+                    .forEach(it -> paths.add(URLDecoder.decode(it.getFileName().toString(), UTF_8)));
+        }
+        return paths;
+    }
+
+    /**
+     * Writes buffered samples of all paths.
+     */
+    public synchronized void flush() throws IOException {
+        for (var series : series.values()) {
+            series.flush();
+        }
+    }
+
+    private synchronized Series series(String path) throws IOException {
+        var series = this.series.get(path);
+        if (series == null) {
+            series = new Series(directory.resolve(URLEncoder.encode(path, UTF_8)));
+            this.series.put(path, series);
+        }
+        return series;
+    }
+
+    /**
+     * Writes buffered samples of all paths and forces them to the storage
+     * device.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (var series : series.values()) {
+            series.close();
+        }
+        series.clear();
+    }
+
+    private static final class Downsampler implements BlockCodec.SampleConsumer {
+        private final long bucket;
+        private final Aggregation aggregation;
+        private final TimeSeries.Builder builder;
+        private long start = Long.MIN_VALUE;
+        private int count;
+        private double first;
+        private double last;
+        private double min;
+        private double max;
+        private double sum;
+
+        Downsampler(long bucket, Aggregation aggregation, TimeSeries.Builder builder) {
+            if (bucket <= 0) {
+                throw new IllegalArgumentException("bucket must be positive");
+            }
+            this.bucket = bucket;
+            this.aggregation = requireNonNull(aggregation);
+            this.builder = builder;
+        }
+
+        @Override
+        public void accept(long timestamp, double value) {
+            var start = Math.floorDiv(timestamp, bucket) * bucket;
+            if (start != this.start) {
+                finish();
+                this.start = start;
+                first = value;
+                min = value;
+                max = value;
+            }
+            count++;
+            last = value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+        }
+
+        void finish() {
+            if (count == 0) {
+                return;
+            }
+            builder.add(start, switch (aggregation) {
+            case MIN -> min;
+            case MAX -> max;
+            case MEAN -> sum / count;
+            case SUM -> sum;
+            case FIRST -> first;
+            case LAST -> last;
+            case COUNT -> count;
+            });
+            count = 0;
+            sum = 0;
+        }
+    }
+}
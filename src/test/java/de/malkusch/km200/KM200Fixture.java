@@ -0,0 +1,47 @@
+package de.malkusch.km200;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.io.IOUtils.resourceToString;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * The gateway of the WireMock tests. The credentials decrypt the responses in
+ * the test resources.
+ */
+public final class KM200Fixture {
+
+    public static final String GATEWAY_PASSWORD = "aaaa-bbbb-cccc-dddd";
+    public static final String PRIVATE_PASSWORD = "secret1";
+    public static final String SALT = "abababababababababababababababababababababababababababababababab";
+    public static final Duration TIMEOUT = Duration.ofSeconds(5);
+    public static final int PORT = 8080;
+    public static final String KM200_URI = "http://localhost:" + PORT;
+
+    private KM200Fixture() {
+    }
+
+    /**
+     * Stubs the probe of {@link KM200}'s construction.
+     */
+    public static void stubSystem() throws IOException {
+        stubFor(get("/system").willReturn(ok(loadBody("system"))));
+    }
+
+    public static KM200 km200() throws KM200Exception, IOException, InterruptedException {
+        return new KM200(KM200_URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+    }
+
+    public static KM200.Builder builder() {
+        return KM200.builder().uri(KM200_URI).gatewayPassword(GATEWAY_PASSWORD).privatePassword(PRIVATE_PASSWORD)
+                .salt(SALT);
+    }
+
+    public static String loadBody(String path) throws IOException {
+        return resourceToString(path, UTF_8, KM200Fixture.class.getClassLoader());
+    }
+}
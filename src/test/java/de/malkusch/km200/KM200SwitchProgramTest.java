@@ -0,0 +1,98 @@
+package de.malkusch.km200;
+
+import static java.time.DayOfWeek.MONDAY;
+import static java.time.DayOfWeek.TUESDAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import de.malkusch.km200.KM200SwitchProgram.SwitchPoint;
+import tools.jackson.databind.ObjectMapper;
+
+public class KM200SwitchProgramTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void parseShouldOrderSwitchPoints() throws Exception {
+        var program = parse("""
+                {"maxNbOfSwitchPoints":42,"maxNbOfSwitchPointsPerDay":6,"switchPointTimeRaster":15,"switchPoints":[
+                    {"dayOfWeek":"Tu","setpoint":"eco","time":1320},
+                    {"dayOfWeek":"Mo","setpoint":"comfort2","time":330}]}""");
+
+        assertEquals(List.of(new SwitchPoint(MONDAY, LocalTime.of(5, 30), "comfort2"),
+                new SwitchPoint(TUESDAY, LocalTime.of(22, 0), "eco")), program.switchPoints());
+        assertEquals(42, program.maxSwitchPoints());
+        assertEquals(6, program.maxSwitchPointsPerDay());
+        assertEquals(15, program.timeRaster());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { //
+            "{\"switchPoints\":[{\"dayOfWeek\":\"Xx\",\"setpoint\":\"eco\",\"time\":60}]}", //
+            "{\"switchPoints\":[{\"dayOfWeek\":\"Mo\",\"setpoint\":\"eco\",\"time\":1440}]}", //
+            "{\"switchPoints\":[{\"dayOfWeek\":\"Mo\",\"setpoint\":\"eco\",\"time\":-1}]}", //
+            "{\"switchPoints\":[{\"dayOfWeek\":\"Mo\",\"setpoint\":\"eco\"}]}", //
+            "{\"switchPoints\":{}}", //
+            "{\"value\":21.5}" })
+    public void parseShouldRejectInvalidProgram(String json) throws Exception {
+        assertThrows(KM200Exception.class, () -> parse(json));
+    }
+
+    @Test
+    public void assertFitsShouldRejectTooManySwitchPoints() throws Exception {
+        var current = parse("{\"maxNbOfSwitchPoints\":2,\"switchPoints\":[]}");
+        var program = new KM200SwitchProgram(List.of(new SwitchPoint(MONDAY, LocalTime.of(6, 0), "comfort2"),
+                new SwitchPoint(MONDAY, LocalTime.of(22, 0), "eco"),
+                new SwitchPoint(TUESDAY, LocalTime.of(6, 0), "comfort2")));
+
+        assertThrows(IllegalArgumentException.class, () -> program.assertFits(current));
+    }
+
+    @Test
+    public void assertFitsShouldRejectTooManySwitchPointsPerDay() throws Exception {
+        var current = parse("{\"maxNbOfSwitchPointsPerDay\":1,\"switchPoints\":[]}");
+        var program = new KM200SwitchProgram(List.of(new SwitchPoint(MONDAY, LocalTime.of(6, 0), "comfort2"),
+                new SwitchPoint(MONDAY, LocalTime.of(22, 0), "eco")));
+
+        assertThrows(IllegalArgumentException.class, () -> program.assertFits(current));
+    }
+
+    @Test
+    public void assertFitsShouldRejectSwitchPointOffRaster() throws Exception {
+        var current = parse("{\"switchPointTimeRaster\":15,\"switchPoints\":[]}");
+        var program = new KM200SwitchProgram(List.of(new SwitchPoint(MONDAY, LocalTime.of(6, 10), "comfort2")));
+
+        assertThrows(IllegalArgumentException.class, () -> program.assertFits(current));
+    }
+
+    @Test
+    public void assertFitsShouldAcceptProgramWithinLimits() throws Exception {
+        var current = parse("""
+                {"maxNbOfSwitchPoints":2,"maxNbOfSwitchPointsPerDay":1,"switchPointTimeRaster":15,"switchPoints":[]}""");
+        var program = new KM200SwitchProgram(List.of(new SwitchPoint(MONDAY, LocalTime.of(6, 15), "comfort2"),
+                new SwitchPoint(TUESDAY, LocalTime.of(22, 0), "eco")));
+
+        program.assertFits(current);
+    }
+
+    @Test
+    public void toJsonShouldUseMinutesOfDay() throws Exception {
+        var program = new KM200SwitchProgram(List.of(new SwitchPoint(TUESDAY, LocalTime.of(22, 0), "eco"),
+                new SwitchPoint(MONDAY, LocalTime.of(5, 30), "comfort2")));
+
+        assertEquals("[{\"dayOfWeek\":\"Mo\",\"setpoint\":\"comfort2\",\"time\":330},"
+                + "{\"dayOfWeek\":\"Tu\",\"setpoint\":\"eco\",\"time\":1320}]",
+                MAPPER.writeValueAsString(program.toJson()));
+    }
+
+    private static KM200SwitchProgram parse(String json) throws Exception {
+        return KM200SwitchProgram.parse("/heatingCircuits/hc1/switchPrograms/A", MAPPER.readTree(json));
+    }
+}
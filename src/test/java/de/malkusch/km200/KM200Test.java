@@ -20,20 +20,35 @@ import static de.malkusch.km200.KM200.RETRY_DISABLED;
 import static de.malkusch.km200.KM200.USER_AGENT;
 import static java.lang.Thread.currentThread;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.DayOfWeek.MONDAY;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.commons.io.IOUtils.resourceToString;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -41,6 +56,16 @@ import org.junit.jupiter.params.provider.ValueSource;
 import com.github.tomakehurst.wiremock.http.Fault;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 
+import de.malkusch.km200.KM200SwitchProgram.SwitchPoint;
+import de.malkusch.km200.http.AdaptiveTimeout;
+import de.malkusch.km200.http.CachingHttp;
+import de.malkusch.km200.http.Http;
+import de.malkusch.km200.http.MetricsHttp;
+import de.malkusch.km200.http.RecordingHttp;
+import de.malkusch.km200.http.ReplayHttp;
+import de.malkusch.km200.http.UrlHttp;
+import tools.jackson.databind.node.ObjectNode;
+
 @WireMockTest(httpPort = KM200Test.PORT)
 public class KM200Test {
 
@@ -65,6 +90,111 @@ public class KM200Test {
                 () -> new KM200(uri, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT), "Wrong uri " + uri);
     }
 
+    @Test
+    public void builderShouldSkipProbe() throws Exception {
+        KM200.builder().uri(URI).gatewayPassword(GATEWAY_PASSWORD).privatePassword(PRIVATE_PASSWORD).salt(SALT)
+                .probe(KM200.Probe.SKIP).build();
+
+        verify(0, getRequestedFor(urlEqualTo("/system")));
+    }
+
+    @Test
+    public void builderCopyShouldNotChangeOriginal() throws Exception {
+        var builder = KM200.builder().uri(URI).gatewayPassword(GATEWAY_PASSWORD).privatePassword(PRIVATE_PASSWORD)
+                .salt(SALT).probe(KM200.Probe.SKIP);
+
+        builder.copy().decorateTransport(http -> {
+            throw new IllegalStateException("Decorated the original");
+        });
+
+        builder.build().close();
+    }
+
+    @Test
+    public void builderShouldRejectAdaptiveTimeoutWithCustomTransport() throws Exception {
+        var builder = KM200.builder().uri(URI).gatewayPassword(GATEWAY_PASSWORD).privatePassword(PRIVATE_PASSWORD)
+                .salt(SALT).probe(KM200.Probe.SKIP).transport(new UrlHttp(URI, USER_AGENT, TIMEOUT))
+                .adaptiveTimeout(new AdaptiveTimeout(Duration.ofSeconds(1), Duration.ofSeconds(10)));
+
+        assertThrows(IllegalArgumentException.class, builder::build);
+    }
+
+    @Test
+    public void builderShouldDecorateChannel() throws Exception {
+        stubFor(get("/heatingCircuits/hc1/roomtemperature")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        var stats = new MetricsHttp.Stats();
+        var km200 = KM200.builder().uri(URI).gatewayPassword(GATEWAY_PASSWORD).privatePassword(PRIVATE_PASSWORD)
+                .salt(SALT).decorateTransport(http -> new MetricsHttp(http, stats))
+                .decorateChannel(http -> new CachingHttp(http, Duration.ofMinutes(1))).probe(KM200.Probe.SKIP)
+                .build();
+
+        km200.queryDouble("/heatingCircuits/hc1/roomtemperature");
+        km200.queryDouble("/heatingCircuits/hc1/roomtemperature");
+
+        verify(1, getRequestedFor(urlEqualTo("/heatingCircuits/hc1/roomtemperature")));
+        assertEquals(1, stats.requests());
+    }
+
+    @Test
+    public void failedProbeShouldCloseTransport() throws Exception {
+        final class ClosableTransport extends Http implements AutoCloseable {
+            private boolean closed;
+
+            @Override
+            public Response exchange(Request request) throws IOException {
+                throw new IOException("unreachable");
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+            }
+        }
+        var transport = new ClosableTransport();
+        var builder = KM200.builder().uri(URI).retries(RETRY_DISABLED).gatewayPassword(GATEWAY_PASSWORD)
+                .privatePassword(PRIVATE_PASSWORD).salt(SALT).transport(transport);
+
+        assertThrows(IllegalArgumentException.class, builder::build);
+        assertTrue(transport.closed);
+    }
+
+    @Test
+    public void sharedInstancesShouldShareChannel() throws Exception {
+        var builder = KM200.builder().uri(URI).gatewayPassword(GATEWAY_PASSWORD).privatePassword(PRIVATE_PASSWORD)
+                .salt(SALT);
+
+        try (var first = builder.buildShared(); var second = builder.uri(URI + "/").buildShared()) {
+            assertEquals(2, KM200Registry.references(URI));
+            assertTrue(first.metrics() == second.metrics());
+            verify(1, getRequestedFor(urlEqualTo("/system")));
+        }
+
+        assertEquals(0, KM200Registry.references(URI));
+    }
+
+    @Test
+    public void replayShouldServeRecordedExchanges(@TempDir Path dir) throws Exception {
+        stubFor(get("/heatingCircuits/hc1/roomtemperature")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        stubFor(get("/server-error").willReturn(serverError().withBody("failure")));
+        var capture = dir.resolve("km200.capture");
+        var builder = KM200.builder().uri(URI).retries(RETRY_DISABLED).gatewayPassword(GATEWAY_PASSWORD)
+                .privatePassword(PRIVATE_PASSWORD).salt(SALT);
+        try (var recorder = new RecordingHttp(new UrlHttp(URI, USER_AGENT, TIMEOUT), capture);
+                var recording = builder.transport(recorder).build()) {
+            recording.queryDouble("/heatingCircuits/hc1/roomtemperature");
+            assertThrows(KM200Exception.ServerError.class, () -> recording.query("/server-error"));
+        }
+
+        try (var replay = builder.transport(new ReplayHttp(capture, 0)).build()) {
+            assertEquals(21.5, replay.queryDouble("/heatingCircuits/hc1/roomtemperature"));
+            var error = assertThrows(KM200Exception.ServerError.class, () -> replay.query("/server-error"));
+            assertEquals("failure", new String(error.responseBody(), UTF_8));
+        }
+        verify(1, getRequestedFor(urlEqualTo("/heatingCircuits/hc1/roomtemperature")));
+    }
+
     @ParameterizedTest
     @ValueSource(ints = { 200, 201, 204, 299 })
     public void updateShouldSucceedWith2xx(int status) throws Exception {
@@ -138,6 +268,85 @@ public class KM200Test {
         assertEquals("2021-09-21T10:49:25", dateTime);
     }
 
+    @Test
+    public void queryShouldDecryptChangedResponse() throws Exception {
+        stubFor(get("/changing").inScenario("changing").whenScenarioStateIs(STARTED)
+                .willReturn(ok(loadBody("gateway.DateTime"))).willSetStateTo("unchanged"));
+        stubFor(get("/changing").inScenario("changing").whenScenarioStateIs("unchanged")
+                .willReturn(ok(loadBody("gateway.DateTime"))).willSetStateTo("changed"));
+        stubFor(get("/changing").inScenario("changing").whenScenarioStateIs("changed")
+                .willReturn(ok(loadBody("system"))));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+
+        var first = km200.query("/changing");
+        var unchanged = km200.query("/changing");
+        var changed = km200.query("/changing");
+
+        assertEquals(first, unchanged);
+        assertTrue(changed.contains("\"id\":\"/system\""), changed);
+    }
+
+    @Test
+    public void snapshotShouldQueryAllPaths() throws Exception {
+        stubFor(get("/heatingCircuits/hc1/roomtemperature")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        stubFor(get("/gateway/DateTime").willReturn(ok(loadBody("gateway.DateTime"))));
+        stubFor(get("/snapshot-not-found").willReturn(notFound()));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+
+        var snapshot = km200.snapshot(
+                List.of("/heatingCircuits/hc1/roomtemperature", "/gateway/DateTime", "/snapshot-not-found"));
+
+        assertEquals(3, snapshot.size());
+        assertTrue(snapshot.isNumeric(0));
+        assertEquals(21.5, snapshot.doubleValue(0));
+        assertEquals("2021-09-21T10:49:25", snapshot.stringValue(1));
+        assertTrue(snapshot.error(2) instanceof KM200Exception.NotFound);
+        assertEquals(2, snapshot.indexOf("/snapshot-not-found"));
+    }
+
+    @Test
+    public void snapshotShouldNotRetry() throws Exception {
+        stubFor(get("/snapshot-server-error").willReturn(serverError()));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+
+        var snapshot = km200.snapshot(List.of("/snapshot-server-error"));
+
+        assertTrue(snapshot.error(0) instanceof KM200Exception.ServerError);
+        verify(1, getRequestedFor(urlEqualTo("/snapshot-server-error")));
+    }
+
+    @Test
+    public void recordingShouldDecodeSamples() throws Exception {
+        stubFor(get("/recordings/heatSources/total/energyMonitoring/consumption?interval=2023-01-15")
+                .willReturn(ok(loadBody("recordings.consumption.2023-01-15"))));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+
+        var recording = km200.recording("/recordings/heatSources/total/energyMonitoring/consumption",
+                LocalDate.parse("2023-01-15"));
+
+        assertEquals(3, recording.size());
+        assertEquals(1.5, recording.value(0));
+        assertTrue(recording.isMissing(1));
+        assertEquals(2.25, recording.value(2));
+        assertEquals(Duration.ofHours(2).toMillis(), recording.timestamp(2) - recording.timestamp(0));
+    }
+
+    @Test
+    public void notificationWatcherShouldReportOnlyChanges() throws Exception {
+        stubFor(get("/notifications").willReturn(ok(loadBody("notifications"))));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        var watcher = new KM200NotificationWatcher(km200);
+
+        var first = watcher.poll();
+        var second = watcher.poll();
+
+        assertEquals(2, first.added().size());
+        assertEquals("H07", first.added().get(0).displayCode());
+        assertEquals("1038", first.added().get(0).causeCode());
+        assertTrue(second.isEmpty());
+    }
+
     @Test
     public void updateShouldEncrypt() throws Exception {
         stubFor(post("/gateway/DateTime").willReturn(ok()));
@@ -149,6 +358,249 @@ public class KM200Test {
                 .withRequestBody(equalTo("5xIVJSMa037r4XkbMhFnkgKrnu4nsjb9+oeBkEwVIj8=")));
     }
 
+    @Test
+    public void updateShouldPadBlockAlignedJsonWithFullBlock() throws Exception {
+        stubFor(post("/aligned").willReturn(ok()));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+
+        km200.update("/aligned", "2021-09-21T10:49:25");
+        km200.update("/aligned", "abcd");
+
+        verify(postRequestedFor(urlEqualTo("/aligned"))
+                .withRequestBody(equalTo("Vt7Sf99xhVA1yXbgH+7NWpDZUVkU0zFgWRjzpH+DmgU=")));
+    }
+
+    @Test
+    public void writeBehindShouldCoalesceUpdates() throws Exception {
+        stubFor(post("/write-behind").willReturn(ok()));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+
+        try (var writeBehind = new KM200WriteBehind(km200, Duration.ofMillis(200))) {
+            var first = writeBehind.update("/write-behind", 21);
+            var second = writeBehind.update("/write-behind", 22);
+            var third = writeBehind.update("/write-behind", 23);
+
+            CompletableFuture.allOf(first, second, third).get(5, SECONDS);
+        }
+
+        verify(1, postRequestedFor(urlEqualTo("/write-behind")));
+    }
+
+    @Test
+    public void writeBehindShouldNotFlushNewerUpdateEarly() throws Exception {
+        stubFor(post("/write-behind").willReturn(ok()));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+
+        try (var writeBehind = new KM200WriteBehind(km200, Duration.ofMillis(500))) {
+            writeBehind.update("/write-behind", 21);
+            Thread.sleep(300);
+            writeBehind.flush();
+            var newer = writeBehind.update("/write-behind", 22);
+
+            Thread.sleep(350);
+            verify(1, postRequestedFor(urlEqualTo("/write-behind")));
+            newer.get(5, SECONDS);
+        }
+
+        verify(2, postRequestedFor(urlEqualTo("/write-behind")));
+    }
+
+    @Test
+    public void writeBehindShouldRejectUpdatesAfterClose() throws Exception {
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        var writeBehind = new KM200WriteBehind(km200, Duration.ofMillis(200));
+        writeBehind.close();
+
+        assertThrows(IllegalStateException.class, () -> writeBehind.update("/write-behind", 21));
+        assertThrows(IllegalStateException.class, writeBehind::flush);
+    }
+
+    @Test
+    public void updateShouldSkipRedundantUpdate() throws Exception {
+        stubFor(get("/heatingCircuits/hc1/roomtemperature")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        stubFor(post("/heatingCircuits/hc1/roomtemperature").willReturn(ok()));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        km200.skipRedundantUpdates(Duration.ofMinutes(1));
+
+        km200.update("/heatingCircuits/hc1/roomtemperature", new BigDecimal("21.50"));
+
+        verify(0, postRequestedFor(urlEqualTo("/heatingCircuits/hc1/roomtemperature")));
+        assertEquals(1, km200.metrics().suppressedUpdates());
+    }
+
+    @Test
+    public void updateShouldNotTrustQueryWhichRacedUpdate() throws Exception {
+        var path = "/heatingCircuits/hc1/roomtemperature";
+        stubFor(get(path).willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        stubFor(post(path).willReturn(ok()));
+        var first = new AtomicBoolean(true);
+        var answered = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var km200 = KM200.builder().uri(URI).gatewayPassword(GATEWAY_PASSWORD).privatePassword(PRIVATE_PASSWORD)
+                .salt(SALT).decorateChannel(http -> new Http() {
+
+                    @Override
+                    public Response exchange(Request request)
+                            throws IOException, InterruptedException, KM200Exception {
+                        var response = http.exchange(request);
+                        if (request.path().equals(path) && request instanceof Request.Get
+                                && first.compareAndSet(true, false)) {
+                            answered.countDown();
+                            release.await();
+                        }
+                        return response;
+                    }
+                }).build();
+        km200.skipRedundantUpdates(Duration.ofMinutes(1));
+
+        var staleQuery = Thread.ofPlatform().start(() -> {
+            try {
+                km200.query(path);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        answered.await();
+        km200.update(path, 22);
+        release.countDown();
+        staleQuery.join();
+        km200.update(path, new BigDecimal("21.50"));
+
+        verify(3, getRequestedFor(urlEqualTo(path)));
+        verify(1, postRequestedFor(urlEqualTo(path)));
+    }
+
+    @Test
+    public void updateShouldNotSkipChangedUpdate() throws Exception {
+        stubFor(get("/heatingCircuits/hc1/roomtemperature")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        stubFor(post("/heatingCircuits/hc1/roomtemperature").willReturn(ok()));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        km200.skipRedundantUpdates(Duration.ofMinutes(1));
+
+        km200.update("/heatingCircuits/hc1/roomtemperature", 22);
+
+        verify(1, postRequestedFor(urlEqualTo("/heatingCircuits/hc1/roomtemperature")));
+        assertEquals(0, km200.metrics().suppressedUpdates());
+    }
+
+    @Test
+    public void updateShouldSkipUnchangedSwitchProgram() throws Exception {
+        stubFor(get("/heatingCircuits/hc1/switchPrograms/A")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.switchPrograms.A"))));
+        stubFor(post("/heatingCircuits/hc1/switchPrograms/A").willReturn(ok()));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        var program = km200.querySwitchProgram("/heatingCircuits/hc1/switchPrograms/A");
+
+        var updated = km200.update("/heatingCircuits/hc1/switchPrograms/A",
+                new KM200SwitchProgram(program.switchPoints()));
+
+        assertFalse(updated);
+        verify(0, postRequestedFor(urlEqualTo("/heatingCircuits/hc1/switchPrograms/A")));
+        assertEquals(4, program.switchPoints().size());
+    }
+
+    @Test
+    public void updateShouldPostChangedSwitchProgram() throws Exception {
+        var path = "/heatingCircuits/hc1/switchPrograms/A";
+        stubFor(get(path).willReturn(ok(loadBody("heatingCircuits.hc1.switchPrograms.A"))));
+        stubFor(post(path).willReturn(ok()));
+        var posted = new AtomicReference<byte[]>();
+        var km200 = KM200.builder().uri(URI).gatewayPassword(GATEWAY_PASSWORD).privatePassword(PRIVATE_PASSWORD)
+                .salt(SALT).decorateTransport(http -> new Http() {
+
+                    // Serves the encrypted update at /posted for decryption
+                    @Override
+                    public Response exchange(Request request)
+                            throws IOException, InterruptedException, KM200Exception {
+                        if (request instanceof Request.Post post) {
+                            var body = post.body();
+                            var bytes = new byte[body.remaining()];
+                            body.get(bytes);
+                            posted.set(bytes);
+
+                        } else if (request.path().equals("/posted")) {
+                            return new Response(200, posted.get());
+                        }
+                        return http.exchange(request);
+                    }
+                }).build();
+        var program = km200.querySwitchProgram(path);
+
+        var updated = km200.update(path, program.withDay(MONDAY, List.of( //
+                new SwitchPoint(MONDAY, LocalTime.of(6, 0), "comfort2"), //
+                new SwitchPoint(MONDAY, LocalTime.of(22, 0), "eco"))));
+
+        assertTrue(updated);
+        verify(1, postRequestedFor(urlEqualTo(path)));
+        assertEquals("{\"switchPoints\":[" //
+                + "{\"dayOfWeek\":\"Mo\",\"setpoint\":\"comfort2\",\"time\":360}," //
+                + "{\"dayOfWeek\":\"Mo\",\"setpoint\":\"eco\",\"time\":1320}," //
+                + "{\"dayOfWeek\":\"Tu\",\"setpoint\":\"comfort2\",\"time\":330}," //
+                + "{\"dayOfWeek\":\"Tu\",\"setpoint\":\"eco\",\"time\":1320}]}", km200.query("/posted"));
+    }
+
+    @Test
+    public void updateShouldRejectSwitchProgramBeyondLimits() throws Exception {
+        var path = "/heatingCircuits/hc1/switchPrograms/A";
+        stubFor(get(path).willReturn(ok(loadBody("heatingCircuits.hc1.switchPrograms.A"))));
+        stubFor(post(path).willReturn(ok()));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        var program = km200.querySwitchProgram(path);
+        var tooMany = new ArrayList<SwitchPoint>();
+        for (int hour = 0; hour < 7; hour++) {
+            tooMany.add(new SwitchPoint(MONDAY, LocalTime.of(hour, 0), "eco"));
+        }
+        var offRaster = List.of(new SwitchPoint(MONDAY, LocalTime.of(6, 10), "eco"));
+
+        assertThrows(IllegalArgumentException.class, () -> km200.update(path, program.withDay(MONDAY, tooMany)));
+        assertThrows(IllegalArgumentException.class, () -> km200.update(path, program.withDay(MONDAY, offRaster)));
+        verify(0, postRequestedFor(urlEqualTo(path)));
+    }
+
+    @Test
+    public void forceUpdateShouldNotSkipRedundantUpdate() throws Exception {
+        stubFor(get("/heatingCircuits/hc1/roomtemperature")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        stubFor(post("/heatingCircuits/hc1/roomtemperature").willReturn(ok()));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        km200.skipRedundantUpdates(Duration.ofMinutes(1));
+
+        km200.forceUpdate("/heatingCircuits/hc1/roomtemperature", new BigDecimal("21.5"));
+
+        verify(1, postRequestedFor(urlEqualTo("/heatingCircuits/hc1/roomtemperature")));
+    }
+
+    @Test
+    public void valueCacheShouldServePersistedValue(@TempDir Path directory) throws Exception {
+        stubFor(get("/gateway/DateTime").willReturn(ok(loadBody("gateway.DateTime"))));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        var file = directory.resolve("km200.cache");
+        try (var cache = new KM200ValueCache(km200, file)) {
+            cache.query("/gateway/DateTime");
+        }
+
+        try (var cache = new KM200ValueCache(km200, file)) {
+            var value = cache.cached("/gateway/DateTime");
+
+            assertTrue(value.json().contains("2021-09-21T10:49:25"), value.json());
+        }
+        verify(1, getRequestedFor(urlEqualTo("/gateway/DateTime")));
+    }
+
+    @Test
+    public void valueCacheShouldServeKnownValueAfterClose(@TempDir Path directory) throws Exception {
+        stubFor(get("/gateway/DateTime").willReturn(ok(loadBody("gateway.DateTime"))));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        var cache = new KM200ValueCache(km200, directory.resolve("km200.cache"));
+        var value = cache.query("/gateway/DateTime");
+        cache.close();
+
+        assertEquals(value, cache.query("/gateway/DateTime"));
+        verify(1, getRequestedFor(urlEqualTo("/gateway/DateTime")));
+    }
+
     @Test
     public void queryShouldInterrupt() throws Exception {
         stubFor(get("/interrupt").willReturn(ok(loadBody("gateway.DateTime"))));
@@ -207,6 +659,21 @@ public class KM200Test {
         assertThrows(KM200Exception.Forbidden.class, () -> km200.queryString("/forbidden"));
     }
 
+    @Test
+    public void tryQueryShouldReturnExpectedFailures() throws Exception {
+        stubFor(get("/heatingCircuits/hc1/roomtemperature")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        stubFor(get("/forbidden").willReturn(status(403)));
+        stubFor(get("/non-existing").willReturn(notFound()));
+        stubFor(get("/locked").willReturn(status(423)));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+
+        assertTrue(km200.tryQuery("/heatingCircuits/hc1/roomtemperature") instanceof KM200Result.Value);
+        assertEquals(new KM200Result.Forbidden("/forbidden"), km200.tryQuery("/forbidden"));
+        assertEquals(new KM200Result.NotFound("/non-existing"), km200.tryQuery("/non-existing"));
+        assertEquals(new KM200Result.Locked("/locked"), km200.tryQuery("/locked"));
+    }
+
     @Test
     public void updateShouldFailOnForbiddenPath() throws Exception {
         stubFor(post("/update-forbidden").willReturn(status(403)));
@@ -471,6 +938,111 @@ public class KM200Test {
         verify(4, getRequestedFor(urlEqualTo("/retry-wait")));
     }
 
+    @Test
+    public void endpointsShouldQueryCrossLinkedPathsOnce() throws Exception {
+        stubFor(get("/heatingCircuits").willReturn(ok(loadBody("heatingCircuits"))));
+        stubFor(get("/heatingCircuits/hc1").willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        stubFor(get("/heatingCircuits/hc2").willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+
+        var endpoints = km200.endpoints(KM200Endpoint.Discovery.ALL.roots("/heatingCircuits")) //
+                .map(KM200Endpoint::path).toList();
+
+        assertEquals(List.of("/heatingCircuits/hc1", "/heatingCircuits/hc2"), endpoints);
+        verify(1, getRequestedFor(urlEqualTo("/heatingCircuits")));
+        verify(1, getRequestedFor(urlEqualTo("/heatingCircuits/hc1")));
+    }
+
+    @Test
+    public void endpointsShouldStopAtLimits() throws Exception {
+        stubFor(get("/heatingCircuits").willReturn(ok(loadBody("heatingCircuits"))));
+        stubFor(get("/heatingCircuits/hc1").willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        var discovery = KM200Endpoint.Discovery.ALL.roots("/heatingCircuits");
+
+        assertEquals(0, km200.endpoints(discovery.maxDepth(0)).count());
+        assertEquals(1, km200.endpoints(discovery.maxNodes(2)).count());
+        verify(0, getRequestedFor(urlEqualTo("/heatingCircuits/hc2")));
+    }
+
+    @Test
+    public void pollerShouldStretchIntervalOfStablePath() throws Exception {
+        stubFor(get("/heatingCircuits/hc1/roomtemperature")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        var changes = new AtomicInteger();
+
+        try (var poller = new KM200Poller(km200, Duration.ofMillis(50), Duration.ofSeconds(2),
+                (path, json) -> changes.incrementAndGet())) {
+            poller.watch("/heatingCircuits/hc1/roomtemperature");
+            Thread.sleep(1500);
+
+            var interval = poller.intervals().get("/heatingCircuits/hc1/roomtemperature");
+            assertTrue(interval.compareTo(Duration.ofMillis(400)) >= 0, "Interval didn't grow: " + interval);
+            assertEquals(1, changes.get());
+            var stats = poller.stats();
+            assertTrue(stats.polls() < stats.fixedRatePolls());
+            assertTrue(stats.savedGatewayTime().isPositive());
+        }
+    }
+
+    @Test
+    public void pollerShouldBackOffOnFailures() throws Exception {
+        stubFor(get("/poll-failure").willReturn(serverError()));
+        var km200 = new KM200(URI, RETRY_DISABLED, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+
+        try (var poller = new KM200Poller(km200, Duration.ofMillis(50), Duration.ofSeconds(2), (path, json) -> {
+        })) {
+            poller.watch("/poll-failure");
+            Thread.sleep(1500);
+
+            var interval = poller.intervals().get("/poll-failure");
+            assertTrue(interval.compareTo(Duration.ofMillis(400)) >= 0, "Interval didn't grow: " + interval);
+            var stats = poller.stats();
+            assertEquals(stats.polls(), stats.failures());
+        }
+    }
+
+    @Test
+    public void pollerShouldNotCountListenerFailures() throws Exception {
+        stubFor(get("/heatingCircuits/hc1/roomtemperature")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        var changes = new AtomicInteger();
+
+        try (var poller = new KM200Poller(km200, Duration.ofMillis(50), Duration.ofSeconds(2), (path, json) -> {
+            changes.incrementAndGet();
+            throw new IllegalStateException("listener failed");
+        })) {
+            poller.watch("/heatingCircuits/hc1/roomtemperature");
+            Thread.sleep(500);
+
+            assertEquals(1, changes.get());
+            var stats = poller.stats();
+            assertTrue(stats.polls() > 1);
+            assertEquals(0, stats.failures());
+        }
+    }
+
+    @Test
+    public void pollerListenerShouldNotModifyQueriedValues() throws Exception {
+        stubFor(get("/heatingCircuits/hc1/roomtemperature")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        var km200 = new KM200(URI, TIMEOUT, GATEWAY_PASSWORD, PRIVATE_PASSWORD, SALT);
+        var changes = new AtomicInteger();
+
+        try (var poller = new KM200Poller(km200, Duration.ofMillis(50), Duration.ofSeconds(2), (path, json) -> {
+            changes.incrementAndGet();
+            ((ObjectNode) json).put("value", 0);
+        })) {
+            poller.watch("/heatingCircuits/hc1/roomtemperature");
+            Thread.sleep(500);
+
+            assertEquals(1, changes.get());
+            assertEquals(21.5, km200.queryDouble("/heatingCircuits/hc1/roomtemperature"));
+        }
+    }
+
     @Test
     public void queryShouldNotRetryWhenDisabled() throws Exception {
         stubFor(get("/retry-disabled").willReturn(serverError()));
@@ -0,0 +1,53 @@
+package de.malkusch.km200.dump;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.status;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
+import static de.malkusch.km200.KM200Fixture.PORT;
+import static de.malkusch.km200.KM200Fixture.builder;
+import static de.malkusch.km200.KM200Fixture.loadBody;
+import static de.malkusch.km200.KM200Fixture.stubSystem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+
+import tools.jackson.databind.ObjectMapper;
+
+@WireMockTest(httpPort = PORT)
+public class KM200DumpTest {
+
+    @Test
+    public void dumpShouldWriteOneLinePerEndpoint() throws Exception {
+        stubFor(get(urlMatching("/.*")).atPriority(10).willReturn(status(403)));
+        stubSystem();
+        stubFor(get("/system/brand").willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        var out = new StringWriter();
+        var gateway = new KM200Dump.Gateway("home", builder());
+
+        var failures = new KM200Dump(out).dump(List.of(gateway));
+
+        assertEquals(0, failures);
+        var lines = out.toString().lines().toList();
+        assertEquals(17, lines.size());
+
+        var mapper = new ObjectMapper();
+        var brand = mapper.readTree(lines.get(0));
+        assertEquals("home", brand.get("gateway").asText());
+        assertEquals("/system/brand", brand.get("path").asText());
+        assertEquals("floatValue", brand.get("type").asText());
+        assertEquals("21.5", brand.get("value").asText());
+        assertEquals("C", brand.get("json").get("unitOfMeasure").asText());
+        assertEquals(3, brand.get("requests").asInt());
+
+        var forbidden = mapper.readTree(lines.get(1));
+        assertEquals("Forbidden", forbidden.get("type").asText());
+        assertEquals(1, forbidden.get("requests").asInt());
+    }
+}
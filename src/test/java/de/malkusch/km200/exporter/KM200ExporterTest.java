@@ -0,0 +1,82 @@
+package de.malkusch.km200.exporter;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.status;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static de.malkusch.km200.KM200Fixture.PORT;
+import static de.malkusch.km200.KM200Fixture.km200;
+import static de.malkusch.km200.KM200Fixture.loadBody;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+
+import de.malkusch.km200.KM200Fixture;
+
+@WireMockTest(httpPort = PORT)
+public class KM200ExporterTest {
+
+    @BeforeEach
+    public void stubSystem() throws Exception {
+        KM200Fixture.stubSystem();
+    }
+
+    @Test
+    public void exporterShouldServePolledValues() throws Exception {
+        stubFor(get("/heatingCircuits/hc1/roomtemperature")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        stubFor(get("/forbidden").willReturn(status(403)));
+        var km200 = km200();
+        var paths = List.of("/heatingCircuits/hc1/roomtemperature", "/forbidden");
+
+        try (var exporter = new KM200Exporter(km200, paths, Duration.ofMinutes(1), 0);
+                var client = HttpClient.newHttpClient()) {
+
+            var address = exporter.address();
+            var request = HttpRequest
+                    .newBuilder(URI.create("http://localhost:" + address.getPort() + "/metrics")).build();
+            var body = "";
+            for (int i = 0; i < 50 && !body.contains("km200_up 1"); i++) {
+                Thread.sleep(100);
+                body = client.send(request, BodyHandlers.ofString()).body();
+            }
+
+            assertTrue(body.contains("km200_value{path=\"/heatingCircuits/hc1/roomtemperature\"} 21.5 "));
+            assertTrue(body.contains("km200_value_failures_total{path=\"/forbidden\"} 1\n"));
+            assertEquals(-1, body.indexOf("km200_value{path=\"/forbidden\"}"));
+        }
+    }
+
+    @Test
+    public void exporterShouldBeDownIfNoValueWasRead() throws Exception {
+        stubFor(get("/forbidden").willReturn(status(403)));
+        var km200 = km200();
+
+        try (var exporter = new KM200Exporter(km200, List.of("/forbidden"), Duration.ofMinutes(1), 0);
+                var client = HttpClient.newHttpClient()) {
+
+            var address = exporter.address();
+            var request = HttpRequest
+                    .newBuilder(URI.create("http://localhost:" + address.getPort() + "/metrics")).build();
+            var body = "";
+            for (int i = 0; i < 50 && !body.contains("km200_value_failures_total{path=\"/forbidden\"} 1"); i++) {
+                Thread.sleep(100);
+                body = client.send(request, BodyHandlers.ofString()).body();
+            }
+
+            assertTrue(body.contains("km200_value_failures_total{path=\"/forbidden\"} 1\n"));
+            assertTrue(body.contains("km200_up 0\n"));
+        }
+    }
+}
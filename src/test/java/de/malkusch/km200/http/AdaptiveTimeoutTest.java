@@ -0,0 +1,53 @@
+package de.malkusch.km200.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveTimeoutTest {
+
+    private static final Duration MIN = Duration.ofMillis(200);
+    private static final Duration MAX = Duration.ofSeconds(30);
+
+    @Test
+    public void timeoutShouldBeMaxWithoutEnoughSamples() {
+        var timeout = new AdaptiveTimeout(MIN, MAX);
+        for (int i = 0; i < 9; i++) {
+            timeout.record("/gateway/DateTime", Duration.ofMillis(100));
+        }
+
+        assertEquals(MAX, timeout.timeout("/gateway/DateTime"));
+        assertEquals(MAX, timeout.timeout("/recordings/heatSources/total"));
+    }
+
+    @Test
+    public void timeoutShouldFollowP99OfPrefix() {
+        var timeout = new AdaptiveTimeout(MIN, MAX);
+        for (int i = 0; i < 20; i++) {
+            timeout.record("/gateway/DateTime", Duration.ofMillis(100));
+            timeout.record("/recordings/heatSources/total?interval=2023-01", Duration.ofSeconds(2));
+            timeout.record("/system/sensors/temperatures/outdoor_t1", Duration.ofMillis(10));
+        }
+
+        assertEquals(Duration.ofMillis(300), timeout.timeout("/gateway/DateTime"));
+        assertEquals(Duration.ofSeconds(6), timeout.timeout("/recordings/heatSources/total?interval=2023-02"));
+        assertEquals(MIN, timeout.timeout("/system/sensors/temperatures/return"));
+        assertEquals(Map.of("/gateway/DateTime", Duration.ofMillis(300), //
+                "/recordings/heatSources", Duration.ofSeconds(6), //
+                "/system/sensors", MIN), timeout.timeouts());
+    }
+
+    @Test
+    public void timedOutSamplesShouldGrowTimeout() {
+        var timeout = new AdaptiveTimeout(MIN, MAX);
+        for (int i = 0; i < 20; i++) {
+            timeout.record("/gateway/DateTime", Duration.ofMillis(100));
+        }
+        timeout.record("/gateway/DateTime", timeout.timeout("/gateway/DateTime"));
+
+        assertEquals(Duration.ofMillis(900), timeout.timeout("/gateway/DateTime"));
+    }
+}
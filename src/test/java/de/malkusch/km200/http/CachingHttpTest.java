@@ -0,0 +1,71 @@
+package de.malkusch.km200.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import de.malkusch.km200.KM200Exception;
+import de.malkusch.km200.http.Http.Request.Get;
+
+@Timeout(60)
+public class CachingHttpTest {
+
+    @Test
+    public void getDuringPostShouldNotBeCached() throws Exception {
+        var arrived = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var gets = new AtomicInteger();
+        var gateway = new Http() {
+
+            @Override
+            public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
+                if (request instanceof Get && gets.incrementAndGet() == 1) {
+                    arrived.countDown();
+                    release.await();
+                }
+                return new Response(200, request.path().getBytes());
+            }
+        };
+        var http = new CachingHttp(gateway, Duration.ofMinutes(1));
+
+        var stale = CompletableFuture.supplyAsync(() -> {
+            try {
+                return http.get("/setpoint");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        arrived.await();
+        http.post("/setpoint", new byte[0]);
+        release.countDown();
+        stale.join();
+
+        http.get("/setpoint");
+        assertEquals(2, gets.get());
+    }
+
+    @Test
+    public void repeatedGetShouldBeCached() throws Exception {
+        var gets = new AtomicInteger();
+        var http = new CachingHttp(new Http() {
+
+            @Override
+            public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
+                gets.incrementAndGet();
+                return new Response(200, request.path().getBytes());
+            }
+        }, Duration.ofMinutes(1));
+
+        http.get("/setpoint");
+        http.get("/setpoint");
+
+        assertEquals(1, gets.get());
+    }
+}
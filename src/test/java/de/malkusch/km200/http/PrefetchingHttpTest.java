@@ -0,0 +1,85 @@
+package de.malkusch.km200.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import de.malkusch.km200.KM200Exception;
+
+@Timeout(60)
+public class PrefetchingHttpTest {
+
+    private static final class FakeGateway extends Http {
+        private final List<String> served = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
+            served.add(Priority.current() + " " + request);
+            return new Response(200, request.path().getBytes());
+        }
+
+        /**
+         * A hit might schedule the next prefetch, which races with the
+         * assertions. Only the interactive requests are deterministic.
+         */
+        List<String> interactive() {
+            synchronized (served) {
+                return served.stream().filter(it -> it.startsWith("INTERACTIVE ")).toList();
+            }
+        }
+    }
+
+    @Test
+    public void likelySuccessorShouldBePrefetched() throws Exception {
+        var gateway = new FakeGateway();
+        try (var http = new PrefetchingHttp(gateway, Duration.ofMinutes(1))) {
+            for (int i = 0; i < 3; i++) {
+                http.get("/heatingCircuits/hc1/roomtemperature");
+                http.get("/heatingCircuits/hc1/currentRoomSetpoint");
+            }
+            assertEquals(0, http.prefetches());
+
+            http.get("/heatingCircuits/hc1/roomtemperature");
+            awaitPrefetches(http, 1);
+            var response = http.get("/heatingCircuits/hc1/currentRoomSetpoint");
+
+            assertEquals("/heatingCircuits/hc1/currentRoomSetpoint", new String(response.body()));
+            assertEquals(1, http.hits());
+            assertTrue(gateway.served.contains("IDLE GET /heatingCircuits/hc1/currentRoomSetpoint"));
+            assertEquals(7, gateway.interactive().size());
+        }
+    }
+
+    @Test
+    public void updateShouldDiscardPrefetch() throws Exception {
+        var gateway = new FakeGateway();
+        try (var http = new PrefetchingHttp(gateway, Duration.ofMinutes(1))) {
+            for (int i = 0; i < 3; i++) {
+                http.get("/a");
+                http.get("/b");
+            }
+            http.get("/a");
+            awaitPrefetches(http, 1);
+
+            http.post("/b", new byte[0]);
+            http.get("/b");
+
+            assertEquals(0, http.hits());
+            assertEquals("INTERACTIVE GET /b", gateway.interactive().getLast());
+        }
+    }
+
+    private static void awaitPrefetches(PrefetchingHttp http, long prefetches) throws InterruptedException {
+        while (http.prefetches() < prefetches) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package de.malkusch.km200.http;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import de.malkusch.km200.KM200Exception;
+
+/**
+ * Runs many virtual thread callers against a stand-in gateway.
+ */
+@Timeout(60)
+public class SerializedHttpStressTest {
+
+    private static final int CALLERS = 2000;
+
+    /**
+     * A stand-in for the KM200, which records its concurrency and the order
+     * of the requests.
+     */
+    private static final class FakeGateway extends Http {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final List<String> served = Collections.synchronizedList(new ArrayList<>());
+        private final long serviceNanos;
+
+        FakeGateway(long serviceNanos) {
+            this.serviceNanos = serviceNanos;
+        }
+
+        @Override
+        public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
+            var concurrent = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(concurrent, Math::max);
+            try {
+                if (serviceNanos > 0) {
+                    var end = System.nanoTime() + serviceNanos;
+                    while (System.nanoTime() < end) {
+                        Thread.onSpinWait();
+                    }
+                }
+                served.add(request.path());
+                if (request.path().startsWith("/fail")) {
+                    throw new KM200Exception.ServerError(request + " resulted in a server error");
+                }
+                return new Response(200, new byte[0]);
+
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    @Test
+    public void requestsShouldNeverBeInFlightConcurrently() throws Exception {
+        var gateway = new FakeGateway(MILLISECONDS.toNanos(1) / 10);
+        var http = new SerializedHttp(gateway);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < CALLERS; i++) {
+                var path = "/" + i;
+                var priority = i % 2 == 0 ? Priority.INTERACTIVE : Priority.BACKGROUND;
+                futures.add(executor.submit(() -> priority.call(() -> http.get(path))));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        }
+
+        assertEquals(1, gateway.maxInFlight.get());
+        assertEquals(CALLERS, gateway.served.size());
+        assertEquals(0, http.queueDepth());
+    }
+
+    @Test
+    public void batchesShouldNotInterleave() throws Exception {
+        var gateway = new FakeGateway(0);
+        var http = new SerializedHttp(gateway);
+        var batches = 200;
+        var batchSize = 5;
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < batches; i++) {
+                var batch = i;
+                executor.submit(() -> http.exclusively(() -> {
+                    for (int j = 0; j < batchSize; j++) {
+                        http.get("/" + batch);
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        var served = gateway.served;
+        assertEquals(batches * batchSize, served.size());
+        for (int i = 0; i < served.size(); i += batchSize) {
+            assertEquals(1, served.subList(i, i + batchSize).stream().distinct().count(), "Interleaved at " + i);
+        }
+    }
+
+    @Test
+    public void waitersShouldBeServedInArrivalOrderPerPriority() throws Exception {
+        var gateway = new FakeGateway(0);
+        var http = new SerializedHttp(gateway);
+        var waiters = 100;
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var release = new CountDownLatch(1);
+            var holding = new CountDownLatch(1);
+            executor.submit(() -> http.exclusively(() -> {
+                holding.countDown();
+                release.await();
+                return null;
+            }));
+            holding.await();
+
+            for (int i = 0; i < waiters; i++) {
+                var path = "/" + i;
+                var priority = i % 3 == 0 ? Priority.INTERACTIVE : Priority.BACKGROUND;
+                executor.submit(() -> priority.call(() -> http.get(path)));
+                awaitWaiting(http, i + 1);
+            }
+            release.countDown();
+        }
+
+        var interactive = new ArrayList<String>();
+        var background = new ArrayList<String>();
+        for (int i = 0; i < waiters; i++) {
+            (i % 3 == 0 ? interactive : background).add("/" + i);
+        }
+        var expected = new ArrayList<>(interactive);
+        expected.addAll(background);
+        assertEquals(expected, gateway.served);
+    }
+
+    @Test
+    public void waitTimesShouldBeBounded() throws Exception {
+        var serviceNanos = MILLISECONDS.toNanos(1) / 5;
+        var gateway = new FakeGateway(serviceNanos);
+        var http = new SerializedHttp(gateway);
+        var waits = new long[CALLERS];
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CALLERS; i++) {
+                var caller = i;
+                executor.submit(() -> {
+                    var start = System.nanoTime();
+                    http.get("/" + caller);
+                    waits[caller] = System.nanoTime() - start;
+                    return null;
+                });
+            }
+        }
+
+        // No caller waits much longer than the whole queue in front of it.
+        var max = Arrays.stream(waits).max().getAsLong();
+        assertTrue(max < 10 * CALLERS * serviceNanos, "Max wait was " + max / 1_000_000 + "ms");
+    }
+
+    @Test
+    public void interruptedWaiterShouldLeaveQuickly() throws Exception {
+        var gateway = new FakeGateway(0);
+        var http = new SerializedHttp(gateway);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var release = new CountDownLatch(1);
+            var holding = new CountDownLatch(1);
+            executor.submit(() -> http.exclusively(() -> {
+                holding.countDown();
+                release.await();
+                return null;
+            }));
+            holding.await();
+
+            var interrupted = new CompletableFuture<Long>();
+            var waiter = Thread.ofVirtual().start(() -> {
+                try {
+                    http.get("/interrupted");
+                    interrupted.completeExceptionally(new AssertionError("Not interrupted"));
+                } catch (InterruptedException e) {
+                    interrupted.complete(System.nanoTime());
+                } catch (Exception e) {
+                    interrupted.completeExceptionally(e);
+                }
+            });
+            var next = executor.submit(() -> http.get("/next"));
+            awaitWaiting(http, 2);
+
+            var start = System.nanoTime();
+            waiter.interrupt();
+            var latency = interrupted.get(5, SECONDS) - start;
+            assertTrue(latency < MILLISECONDS.toNanos(100), "Interrupt took " + latency + "ns");
+            assertEquals(1, http.queueDepth());
+
+            release.countDown();
+            next.get(5, SECONDS);
+        }
+
+        assertEquals(List.of("/next"), gateway.served);
+    }
+
+    @Test
+    public void interruptedCallerShouldNotEnterGateway() throws Exception {
+        var gateway = new FakeGateway(0);
+        var http = new SerializedHttp(gateway);
+
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> http.get("/interrupted"));
+
+        assertFalse(Thread.interrupted());
+        assertTrue(gateway.served.isEmpty());
+    }
+
+    @Test
+    public void retryDelaysShouldNotHoldBackOtherCallers() throws Exception {
+        var gateway = new FakeGateway(0);
+        var serialized = new SerializedHttp(gateway);
+        var retry = new RetryHttp(serialized, 1, KM200Exception.ServerError.class);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var failing = executor.submit(() -> retry.get("/fail"));
+            while (gateway.served.isEmpty()) {
+                Thread.sleep(1);
+            }
+
+            var start = System.nanoTime();
+            executor.submit(() -> retry.get("/other")).get(5, SECONDS);
+            assertTrue(System.nanoTime() - start < MILLISECONDS.toNanos(500));
+
+            assertThrows(Exception.class, failing::get);
+        }
+
+        assertEquals(List.of("/fail", "/other", "/fail"), gateway.served);
+    }
+
+    @Test
+    public void throughputShouldNotDegradeUnderContention() throws Exception {
+        var gateway = new FakeGateway(0);
+        var http = new SerializedHttp(gateway);
+        var requests = 50_000;
+
+        var start = System.nanoTime();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                executor.submit(() -> http.get("/throughput"));
+            }
+        }
+        var duration = System.nanoTime() - start;
+
+        assertEquals(requests, gateway.served.size());
+        var perRequest = duration / requests;
+        assertTrue(perRequest < MILLISECONDS.toNanos(1), "Overhead per request was " + perRequest + "ns");
+    }
+
+    @Test
+    public void fullQueueShouldRejectRequests() throws Exception {
+        var gateway = new FakeGateway(0);
+        var http = new SerializedHttp(gateway, 10, SerializedHttp.Overflow.REJECT);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var release = hold(executor, http);
+            var futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> http.get("/rejected")));
+            }
+            while (http.overloads() < CALLERS - 10) {
+                Thread.sleep(1);
+            }
+            assertEquals(10, http.queueDepth());
+            release.countDown();
+
+            var rejected = 0;
+            for (var future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof KM200Exception.Overloaded);
+                    rejected++;
+                }
+            }
+            assertEquals(CALLERS - 10, rejected);
+        }
+
+        assertEquals(10, gateway.served.size());
+        assertEquals(10, http.maxQueueDepth());
+        assertEquals(CALLERS - 10, http.overloads());
+    }
+
+    @Test
+    public void fullQueueShouldDropOldestBackgroundRequest() throws Exception {
+        var gateway = new FakeGateway(0);
+        var http = new SerializedHttp(gateway, 2, SerializedHttp.Overflow.DROP_OLDEST_BACKGROUND);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var release = hold(executor, http);
+            var oldest = executor.submit(() -> Priority.BACKGROUND.call(() -> http.get("/oldest")));
+            awaitWaiting(http, 1);
+            var newer = executor.submit(() -> Priority.BACKGROUND.call(() -> http.get("/newer")));
+            awaitWaiting(http, 2);
+            var interactive = executor.submit(() -> http.get("/interactive"));
+
+            var e = assertThrows(ExecutionException.class, () -> oldest.get(5, SECONDS));
+            assertTrue(e.getCause() instanceof KM200Exception.Overloaded);
+            awaitWaiting(http, 2);
+            release.countDown();
+            newer.get(5, SECONDS);
+            interactive.get(5, SECONDS);
+        }
+
+        assertEquals(List.of("/interactive", "/newer"), gateway.served);
+        assertEquals(1, http.overloads());
+    }
+
+    @Test
+    public void fullQueueShouldNotDropHigherPriorityForIdleRequest() throws Exception {
+        var gateway = new FakeGateway(0);
+        var http = new SerializedHttp(gateway, 2, SerializedHttp.Overflow.DROP_OLDEST_BACKGROUND);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var release = hold(executor, http);
+            var oldest = executor.submit(() -> Priority.BACKGROUND.call(() -> http.get("/oldest")));
+            awaitWaiting(http, 1);
+            var newer = executor.submit(() -> Priority.BACKGROUND.call(() -> http.get("/newer")));
+            awaitWaiting(http, 2);
+
+            var idle = executor.submit(() -> Priority.IDLE.call(() -> http.get("/idle")));
+            var e = assertThrows(ExecutionException.class, () -> idle.get(5, SECONDS));
+            assertTrue(e.getCause() instanceof KM200Exception.Overloaded);
+
+            release.countDown();
+            oldest.get(5, SECONDS);
+            newer.get(5, SECONDS);
+        }
+
+        assertEquals(List.of("/oldest", "/newer"), gateway.served);
+        assertEquals(1, http.overloads());
+    }
+
+    @Test
+    public void fullQueueShouldWaitForSpace() throws Exception {
+        var gateway = new FakeGateway(0);
+        var http = new SerializedHttp(gateway, 1, new SerializedHttp.Overflow.Wait(Duration.ofMillis(100)));
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var release = hold(executor, http);
+            var first = executor.submit(() -> http.get("/first"));
+            awaitWaiting(http, 1);
+
+            var start = System.nanoTime();
+            var timedOut = executor.submit(() -> http.get("/timed-out"));
+            var e = assertThrows(ExecutionException.class, () -> timedOut.get(5, SECONDS));
+            assertTrue(e.getCause() instanceof KM200Exception.Overloaded);
+            assertTrue(System.nanoTime() - start >= MILLISECONDS.toNanos(100));
+
+            var waiting = executor.submit(() -> http.get("/waiting"));
+            Thread.sleep(10);
+            release.countDown();
+            first.get(5, SECONDS);
+            waiting.get(5, SECONDS);
+        }
+
+        assertEquals(List.of("/first", "/waiting"), gateway.served);
+    }
+
+    /**
+     * Occupies the gateway until the returned latch is released.
+     */
+    private static CountDownLatch hold(ExecutorService executor, SerializedHttp http) throws InterruptedException {
+        var release = new CountDownLatch(1);
+        var holding = new CountDownLatch(1);
+        executor.submit(() -> http.exclusively(() -> {
+            holding.countDown();
+            release.await();
+            return null;
+        }));
+        holding.await();
+        return release;
+    }
+
+    private static void awaitWaiting(SerializedHttp http, int waiting) throws InterruptedException {
+        var deadline = System.nanoTime() + SECONDS.toNanos(10);
+        while (http.queueDepth() < waiting) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Expected " + waiting + " waiting requests, but were " + http.queueDepth());
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package de.malkusch.km200.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+@Timeout(10)
+public class SerializedHttpTest {
+
+    private final List<String> served = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch busy = new CountDownLatch(1);
+    private final CountDownLatch proceed = new CountDownLatch(1);
+
+    private final SerializedHttp http = new SerializedHttp(new Http() {
+
+        @Override
+        public Response exchange(Request request) throws InterruptedException {
+            if (request.path().equals("/busy")) {
+                busy.countDown();
+                proceed.await();
+            }
+            served.add(request.path());
+            return new Response(200, new byte[0]);
+        }
+    });
+
+    @Test
+    public void waitingRequestsShouldBeServedByPriority() throws Exception {
+        var requests = new ArrayList<Thread>();
+        requests.add(request(Priority.INTERACTIVE, "/busy"));
+        busy.await();
+        requests.add(request(Priority.BACKGROUND, "/background1"));
+        requests.add(request(Priority.INTERACTIVE, "/interactive1"));
+        requests.add(request(Priority.BACKGROUND, "/background2"));
+        requests.add(request(Priority.INTERACTIVE, "/interactive2"));
+
+        proceed.countDown();
+        for (var request : requests) {
+            request.join();
+        }
+
+        assertEquals(List.of("/busy", "/interactive1", "/interactive2", "/background1", "/background2"), served);
+    }
+
+    /**
+     * Starts a request and waits until it is queued.
+     */
+    private Thread request(Priority priority, String path) throws InterruptedException {
+        var thread = Thread.ofPlatform().start(() -> {
+            try {
+                priority.call(() -> http.get(path));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        if (!path.equals("/busy")) {
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+        return thread;
+    }
+}
@@ -0,0 +1,87 @@
+package de.malkusch.km200.profile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.malkusch.km200.KM200Exception;
+import de.malkusch.km200.KM200Profile;
+import de.malkusch.km200.http.Http;
+
+@Timeout(60)
+public class KM200ProfilerTest {
+
+    /**
+     * Needs 2ms per request, fails if the previous request ended less than 3ms
+     * ago and then needs 50ms to recover.
+     */
+    private static final class FakeGateway extends Http {
+
+        private long lastEnd;
+        private long overloadedUntil;
+
+        @Override
+        public synchronized Response exchange(Request request)
+                throws IOException, InterruptedException, KM200Exception {
+            try {
+                var now = System.nanoTime();
+                if (now < overloadedUntil) {
+                    throw new KM200Exception.ServerError(request + " resulted in a server error");
+                }
+                if (lastEnd != 0 && now - lastEnd < Duration.ofMillis(3).toNanos()) {
+                    overloadedUntil = now + Duration.ofMillis(50).toNanos();
+                    throw new KM200Exception.ServerError(request + " resulted in a server error");
+                }
+                Thread.sleep(2);
+                return new Response(200, new byte[0]);
+
+            } finally {
+                lastEnd = System.nanoTime();
+            }
+        }
+    }
+
+    @Test
+    public void profilerShouldMeasureCapacity(@TempDir Path dir) throws Exception {
+        var profiler = new KM200Profiler(new FakeGateway(), 5, 10, Duration.ofMillis(10));
+
+        var profile = profiler.profile(List.of("/a", "/b"));
+
+        assertEquals(2, profile.endpoints().size());
+        assertTrue(profile.endpoint("/a").get().median().toNanos() >= Duration.ofMillis(2).toNanos());
+        assertEquals(Duration.ofSeconds(1), profile.timeout());
+        assertTrue(profile.pause().isPositive());
+        assertTrue(profile.recovery().compareTo(Duration.ofMillis(50)) >= 0);
+
+        var file = dir.resolve("profile.json");
+        profile.save(file);
+        var loaded = KM200Profile.load(file);
+        assertEquals(profile.timeout(), loaded.timeout());
+        assertEquals(profile.pause(), loaded.pause());
+        assertEquals(profile.endpoints().size(), loaded.endpoints().size());
+    }
+
+    @Test
+    public void profilerShouldSurviveBadRequests() throws Exception {
+        var gateway = new Http() {
+
+            @Override
+            public Response exchange(Request request) throws IOException, InterruptedException, KM200Exception {
+                throw new KM200Exception.BadRequest(request + " was a bad request");
+            }
+        };
+        var profiler = new KM200Profiler(gateway, 3, 3, Duration.ZERO);
+
+        var profile = profiler.profile(List.of("/bad"));
+
+        assertEquals(1, profile.endpoints().size());
+    }
+}
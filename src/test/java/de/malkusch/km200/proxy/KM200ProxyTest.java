@@ -0,0 +1,112 @@
+package de.malkusch.km200.proxy;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.status;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static de.malkusch.km200.KM200Fixture.PORT;
+import static de.malkusch.km200.KM200Fixture.km200;
+import static de.malkusch.km200.KM200Fixture.loadBody;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+
+import de.malkusch.km200.KM200Fixture;
+
+@WireMockTest(httpPort = PORT)
+public class KM200ProxyTest {
+
+    @BeforeEach
+    public void stubSystem() throws Exception {
+        KM200Fixture.stubSystem();
+    }
+
+    @Test
+    public void proxyShouldServeRepeatedReadsFromCache() throws Exception {
+        stubFor(get("/heatingCircuits/hc1/roomtemperature")
+                .willReturn(ok(loadBody("heatingCircuits.hc1.roomtemperature"))));
+        var km200 = km200();
+
+        try (var proxy = new KM200Proxy(km200, 0, Duration.ofMinutes(1)); var client = HttpClient.newHttpClient()) {
+            var request = HttpRequest.newBuilder(proxyUri(proxy, "/heatingCircuits/hc1/roomtemperature")).build();
+
+            var first = client.send(request, BodyHandlers.ofString());
+            var second = client.send(request, BodyHandlers.ofString());
+
+            assertEquals(200, first.statusCode());
+            assertTrue(first.body().contains("\"value\":21.5"));
+            assertEquals(first.body(), second.body());
+        }
+        verify(1, getRequestedFor(urlEqualTo("/heatingCircuits/hc1/roomtemperature")));
+    }
+
+    @Test
+    public void proxyShouldForwardStatusOfForbiddenPath() throws Exception {
+        stubFor(get("/forbidden").willReturn(status(403)));
+        var km200 = km200();
+
+        try (var proxy = new KM200Proxy(km200, 0, Duration.ofMinutes(1)); var client = HttpClient.newHttpClient()) {
+            var request = HttpRequest.newBuilder(proxyUri(proxy, "/forbidden")).build();
+
+            var response = client.send(request, BodyHandlers.ofString());
+
+            assertEquals(403, response.statusCode());
+        }
+    }
+
+    @Test
+    public void proxyShouldUpdateJsonValue() throws Exception {
+        stubFor(post("/update").willReturn(ok()));
+        var km200 = km200();
+
+        try (var proxy = new KM200Proxy(km200, 0, Duration.ofMinutes(1)); var client = HttpClient.newHttpClient()) {
+            var request = HttpRequest.newBuilder(proxyUri(proxy, "/update"))
+                    .header("Content-Type", "application/json").POST(BodyPublishers.ofString("{\"value\":42}"))
+                    .build();
+
+            var response = client.send(request, BodyHandlers.ofString());
+
+            assertEquals(204, response.statusCode());
+        }
+        verify(1, postRequestedFor(urlEqualTo("/update")));
+    }
+
+    @Test
+    public void proxyShouldRefuseCrossOriginUpdate() throws Exception {
+        stubFor(post("/update").willReturn(ok()));
+        var km200 = km200();
+
+        try (var proxy = new KM200Proxy(km200, 0, Duration.ofMinutes(1)); var client = HttpClient.newHttpClient()) {
+            var body = BodyPublishers.ofString("{\"value\":30}");
+            var crossOrigin = HttpRequest.newBuilder(proxyUri(proxy, "/update"))
+                    .header("Content-Type", "text/plain").header("Origin", "https://example.org").POST(body).build();
+            var plainText = HttpRequest.newBuilder(proxyUri(proxy, "/update"))
+                    .header("Content-Type", "text/plain").POST(body).build();
+
+            assertEquals(403, client.send(crossOrigin, BodyHandlers.ofString()).statusCode());
+            assertEquals(415, client.send(plainText, BodyHandlers.ofString()).statusCode());
+        }
+        verify(0, postRequestedFor(urlEqualTo("/update")));
+    }
+
+    private static URI proxyUri(KM200Proxy proxy, String path) {
+        var address = proxy.address();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort() + path);
+    }
+}
@@ -0,0 +1,54 @@
+package de.malkusch.km200.store;
+
+import static de.malkusch.km200.KM200Fixture.PORT;
+import static de.malkusch.km200.KM200Fixture.km200;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+
+import de.malkusch.km200.KM200Fixture;
+
+@WireMockTest(httpPort = PORT)
+public class RecordingSyncTest {
+
+    private static final String PATH = "/recordings/heatSources/total/energyMonitoring/consumption";
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void stubSystem() throws Exception {
+        KM200Fixture.stubSystem();
+    }
+
+    @Test
+    public void isCompleteShouldLoadDaysBefore1970() throws Exception {
+        var state = directory.resolve("sync.state");
+        Files.writeString(state, String.join("\n", //
+                "2023-01-15\t" + PATH, //
+                "1969-12-30\t" + PATH, //
+                "1969-12-31\t" + PATH, //
+                ""), UTF_8);
+
+        try (var store = new TimeSeriesStore(directory.resolve("store"));
+                var sync = new RecordingSync(km200(), store, state)) {
+
+            assertTrue(sync.isComplete(PATH, LocalDate.of(1969, 12, 30)));
+            assertTrue(sync.isComplete(PATH, LocalDate.of(1969, 12, 31)));
+            assertTrue(sync.isComplete(PATH, LocalDate.of(2023, 1, 15)));
+            assertFalse(sync.isComplete(PATH, LocalDate.of(1969, 12, 29)));
+            assertFalse(sync.isComplete(PATH, LocalDate.of(1970, 1, 1)));
+            assertFalse(sync.isComplete("/other", LocalDate.of(2023, 1, 15)));
+        }
+    }
+}
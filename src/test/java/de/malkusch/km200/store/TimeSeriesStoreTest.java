@@ -0,0 +1,69 @@
+package de.malkusch.km200.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TimeSeriesStoreTest {
+
+    private static final String PATH = "/heatingCircuits/hc1/roomtemperature";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void rangeShouldReturnAppendedSamplesAfterReopening() throws Exception {
+        var random = new Random(42);
+        var timestamps = new long[1000];
+        var values = new double[timestamps.length];
+        var timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamp += i % 100 == 0 ? random.nextInt(1_000_000) : 30_000;
+            timestamps[i] = timestamp;
+            values[i] = i % 10 == 0 ? random.nextGaussian() : 21.5;
+        }
+        try (var store = new TimeSeriesStore(directory)) {
+            for (int i = 0; i < timestamps.length; i++) {
+                store.append(PATH, timestamps[i], values[i]);
+            }
+        }
+
+        try (var store = new TimeSeriesStore(directory)) {
+            var series = store.range(PATH, Long.MIN_VALUE, Long.MAX_VALUE);
+
+            assertArrayEquals(timestamps, series.timestamps());
+            assertArrayEquals(values, series.values());
+        }
+    }
+
+    @Test
+    public void appendShouldDropOlderSamples() throws Exception {
+        try (var store = new TimeSeriesStore(directory)) {
+            store.append(PATH, 2000, 1);
+
+            assertFalse(store.append(PATH, 1000, 2));
+            assertEquals(1, store.range(PATH, 0, 3000).size());
+        }
+    }
+
+    @Test
+    public void downsampleShouldAggregateBuckets() throws Exception {
+        try (var store = new TimeSeriesStore(directory)) {
+            store.append(PATH, 0, 1);
+            store.append(PATH, 30_000, 3);
+            store.append(PATH, 60_000, 5);
+
+            var series = store.downsample(PATH, 0, 60_000, Duration.ofMinutes(1), Aggregation.MEAN);
+
+            assertArrayEquals(new long[] { 0, 60_000 }, series.timestamps());
+            assertArrayEquals(new double[] { 2, 5 }, series.values());
+        }
+    }
+}